@@ -3,6 +3,11 @@
 package com.au.cl.config;
 
 import com.au.cl.filter.JwtRequestFilter;
+import com.au.cl.util.BCryptCostCalibrator;
+import jakarta.servlet.DispatcherType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -23,6 +28,11 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 @EnableMethodSecurity
 public class SecurityConfig {
 
+    private static final Logger logger = LoggerFactory.getLogger(SecurityConfig.class);
+
+    private static final int MIN_BCRYPT_STRENGTH = 10; // Spring Security's default, never go below it
+    private static final int MAX_BCRYPT_STRENGTH = 16;
+
     private final JwtRequestFilter jwtRequestFilter;
 
     public SecurityConfig(JwtRequestFilter jwtRequestFilter) {
@@ -35,6 +45,9 @@ public class SecurityConfig {
             .csrf(csrf -> csrf.disable())
             .cors(cors -> {})
             .authorizeHttpRequests(authorize -> authorize
+                // Async dispatches of already authorized requests (e.g. the SSE attendance monitor) carry no JWT
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+
                 // Public endpoints accessible without authentication
                 .requestMatchers("/api/auth/**").permitAll()
                 .requestMatchers("/", "/index.html", "/register.html").permitAll() // These are HTML pages, permitAll them
@@ -49,6 +62,7 @@ public class SecurityConfig {
                 .requestMatchers("/api/admin/**").hasRole("ADMIN")
                 .requestMatchers("/api/users").hasRole("ADMIN")
                 .requestMatchers("/api/users/{id}/status").hasRole("ADMIN")
+                .requestMatchers("/api/users/{id}/role").hasRole("ADMIN")
                 .requestMatchers("/api/transactions/admin/**").hasRole("ADMIN")
                 .requestMatchers("/api/missions").hasRole("ADMIN")
                 .requestMatchers("/api/missions/**").hasRole("ADMIN")
@@ -92,9 +106,20 @@ public class SecurityConfig {
     //     );
     // }
 
+    /**
+     * BCrypt encoder whose cost is either pinned via security.bcrypt.strength or calibrated at startup
+     * so that one hash takes about security.bcrypt.target-ms on this hardware. Pin the strength when
+     * running several instances so they all hash with the same cost. Stored hashes with a lower cost
+     * are upgraded on the next successful login (see UserDetailsServiceImpl#updatePassword).
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${security.bcrypt.strength:-1}") int strength,
+                                           @Value("${security.bcrypt.target-ms:250}") long targetMillis) {
+        if (strength < 0) {
+            strength = BCryptCostCalibrator.calibrate(targetMillis, MIN_BCRYPT_STRENGTH, MAX_BCRYPT_STRENGTH);
+            logger.info("Calibrated BCrypt strength {} for a target of {} ms per hash", strength, targetMillis);
+        }
+        return new BCryptPasswordEncoder(strength);
     }
 
     @Bean
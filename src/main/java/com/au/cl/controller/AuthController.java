@@ -7,14 +7,20 @@ import com.au.cl.payload.request.LoginRequest;
 import com.au.cl.payload.request.UserRegistrationRequest; // New DTO for registration
 import com.au.cl.payload.response.ApiResponse;
 import com.au.cl.repository.UserRepository;
+import com.au.cl.service.LoginThrottleService;
+import com.au.cl.service.PasswordHashingService;
+import com.au.cl.service.RefreshTokenRevocationService;
 import com.au.cl.service.UserDetailsServiceImpl;
 import com.au.cl.util.JwtUtil;
+import com.au.cl.util.VerifiedClaims;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.slf4j.Logger; // Import for logging
 import org.slf4j.LoggerFactory; // Import for logging
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -23,12 +29,12 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional; // Still needed for refresh token logic or other lookups
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * REST Controller for user authentication operations (login, register, logout, refresh).
@@ -44,7 +50,9 @@ public class AuthController {
     private final UserDetailsServiceImpl userDetailsService;
     private final JwtUtil jwtUtil;
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
+    private final LoginThrottleService loginThrottleService;
+    private final RefreshTokenRevocationService refreshTokenRevocationService;
     private final JwtConfig jwtConfig;
 
     // Constructor injection for all dependencies
@@ -52,13 +60,17 @@ public class AuthController {
                           UserDetailsServiceImpl userDetailsService,
                           JwtUtil jwtUtil,
                           UserRepository userRepository,
-                          PasswordEncoder passwordEncoder,
+                          PasswordHashingService passwordHashingService,
+                          LoginThrottleService loginThrottleService,
+                          RefreshTokenRevocationService refreshTokenRevocationService,
                           JwtConfig jwtConfig) {
         this.authenticationManager = authenticationManager;
         this.userDetailsService = userDetailsService;
         this.jwtUtil = jwtUtil;
         this.userRepository = userRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingService = passwordHashingService;
+        this.loginThrottleService = loginThrottleService;
+        this.refreshTokenRevocationService = refreshTokenRevocationService;
         this.jwtConfig = jwtConfig;
     }
 
@@ -79,7 +91,12 @@ public class AuthController {
         User newUser = new User();
         newUser.setUsername(registrationRequest.getUsername());
         newUser.setEmail(registrationRequest.getEmail());
-        newUser.setPassword(passwordEncoder.encode(registrationRequest.getPassword())); // Hash password
+        try {
+            newUser.setPassword(passwordHashingService.encode(registrationRequest.getPassword())); // Hash password on the hashing pool
+        } catch (RejectedExecutionException e) {
+            logger.warn("Registration of {} rejected: password hashing pool is busy.", registrationRequest.getUsername());
+            return serverBusy();
+        }
         newUser.setRole(Role.AVENGER); // Set default role
         newUser.setBalance(0.0); // Set default balance
         newUser.setAlive(true); // Set default alive status (assuming this field exists in User model)
@@ -92,17 +109,26 @@ public class AuthController {
 
     /**
      * Authenticates a user and issues JWTs as HTTP-only cookies.
+     * Attempts are throttled per client IP and per username before any password hashing happens.
      * @param loginRequest The request body containing username and password.
+     * @param request HttpServletRequest, used for the client address.
      * @param response HttpServletResponse to add cookies to.
      * @return ResponseEntity with user details (username, role) upon successful login.
      */
     @PostMapping("/login")
-    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest, HttpServletResponse response) {
+    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest, HttpServletRequest request, HttpServletResponse response) {
+        long retryAfterSeconds = loginThrottleService.tryAcquireLogin(request.getRemoteAddr(), loginRequest.getUsername());
+        if (retryAfterSeconds > 0) {
+            logger.warn("Login for user {} from {} throttled; retry after {} s.", loginRequest.getUsername(), request.getRemoteAddr(), retryAfterSeconds);
+            return tooManyRequests(retryAfterSeconds);
+        }
+
         try {
-            // Authenticate the user using Spring Security's AuthenticationManager
-            Authentication authentication = authenticationManager.authenticate(
+            // Authenticate the user using Spring Security's AuthenticationManager.
+            // BCrypt verification (and a possible hash upgrade) runs on the bounded hashing pool, not on this request thread.
+            Authentication authentication = passwordHashingService.execute(() -> authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(loginRequest.getUsername(), loginRequest.getPassword())
-            );
+            ));
 
             // Set the authenticated user in Spring Security's context
             SecurityContextHolder.getContext().setAuthentication(authentication);
@@ -117,22 +143,8 @@ public class AuthController {
             // Generate Refresh Token (long-lived)
             final String refreshToken = jwtUtil.generateRefreshToken(authenticatedUser);
 
-            // --- Set Access Token as HTTP-Only Cookie ---
-            Cookie accessTokenCookie = new Cookie("accessToken", accessToken);
-            accessTokenCookie.setHttpOnly(true); // IMPORTANT: Prevents client-side JS access (XSS protection)
-            accessTokenCookie.setSecure(false); // Set to true in production with HTTPS
-            accessTokenCookie.setPath("/"); // Accessible from all paths on the domain
-            accessTokenCookie.setMaxAge((int) (jwtConfig.getAccessTokenExpirationMs() / 1000)); // Max age in seconds
-            response.addCookie(accessTokenCookie);
-
-            // --- Set Refresh Token as HTTP-Only Cookie ---
-            Cookie refreshTokenCookie = new Cookie("refreshToken", refreshToken);
-            refreshTokenCookie.setHttpOnly(true); // IMPORTANT: Prevents client-side JS access
-            refreshTokenCookie.setSecure(false); // Set to true in production with HTTPS
-            // Path for refresh token should be specific to the refresh endpoint or a broader /api/auth
-            refreshTokenCookie.setPath("/api/auth"); // Accessible from /api/auth and its sub-paths
-            refreshTokenCookie.setMaxAge((int) (jwtConfig.getRefreshTokenExpirationMs() / 1000));
-            response.addCookie(refreshTokenCookie);
+            // --- Set both tokens as HTTP-Only Cookies ---
+            addTokenCookies(response, accessToken, refreshToken);
 
             // Prepare response body with non-sensitive user details for frontend redirection/display
             Map<String, String> responseBody = new HashMap<>();
@@ -145,6 +157,9 @@ public class AuthController {
         } catch (BadCredentialsException e) {
             logger.warn("Login failed for user {}: Incorrect username or password.", loginRequest.getUsername());
             return new ResponseEntity<>(new ApiResponse(false, "Incorrect username or password."), HttpStatus.UNAUTHORIZED);
+        } catch (RejectedExecutionException e) {
+            logger.warn("Login for user {} rejected: password hashing pool is busy.", loginRequest.getUsername());
+            return serverBusy();
         } catch (Exception e) {
             logger.error("An unexpected error occurred during login for user {}: {}", loginRequest.getUsername(), e.getMessage(), e);
             return new ResponseEntity<>(new ApiResponse(false, "An unexpected error occurred during login."), HttpStatus.INTERNAL_SERVER_ERROR);
@@ -152,8 +167,9 @@ public class AuthController {
     }
 
     /**
-     * Logs out the user by invalidating JWT cookies.
-     * @param request HttpServletRequest (to potentially read cookie paths if dynamic)
+     * Logs out the user by invalidating JWT cookies and revoking the refresh token, so a copy of the
+     * cookie cannot be used to obtain new access tokens after logout.
+     * @param request HttpServletRequest to extract the refresh token cookie.
      * @param response HttpServletResponse to add expired cookies to.
      * @return ResponseEntity indicating successful logout.
      */
@@ -162,6 +178,19 @@ public class AuthController {
         // Clear Spring Security context
         SecurityContextHolder.clearContext();
 
+        // Revoke the refresh token; an invalid or expired one needs no revocation
+        String refreshToken = getRefreshTokenCookie(request);
+        if (refreshToken != null) {
+            try {
+                VerifiedClaims claims = jwtUtil.parseToken(refreshToken);
+                if (claims.isRefreshToken() && claims.getTokenId() != null) {
+                    refreshTokenRevocationService.revokeIfAbsent(claims.getTokenId(), claims.getExpiresAt());
+                }
+            } catch (JwtException e) {
+                logger.debug("Ignoring invalid refresh token on logout: {}", e.getMessage());
+            }
+        }
+
         // Expire the access token cookie by setting its max age to 0
         Cookie accessTokenCookie = new Cookie("accessToken", null); // Value can be null or empty
         accessTokenCookie.setHttpOnly(true);
@@ -185,25 +214,22 @@ public class AuthController {
     /**
      * Refreshes the access token using a valid refresh token.
      * The refresh token is expected to be in an HTTP-only cookie.
-     * Issues a new access token cookie upon successful refresh.
+     * Refresh tokens are single-use: the presented token is revoked and a new access token and a new
+     * refresh token are issued as cookies. A token that was already used or revoked is rejected.
      * @param request HttpServletRequest to extract refresh token cookie.
-     * @param response HttpServletResponse to set new access token cookie.
+     * @param response HttpServletResponse to set the new token cookies.
      * @return ResponseEntity with new access token details or error.
      */
     @PostMapping("/refresh")
     public ResponseEntity<?> refreshToken(HttpServletRequest request, HttpServletResponse response) {
-        String refreshToken = null;
+        long retryAfterSeconds = loginThrottleService.tryAcquireRefreshByIp(request.getRemoteAddr());
+        if (retryAfterSeconds > 0) {
+            logger.warn("Token refresh from {} throttled; retry after {} s.", request.getRemoteAddr(), retryAfterSeconds);
+            return tooManyRequests(retryAfterSeconds);
+        }
 
         // Extract refresh token from HTTP-only cookie
-        Cookie[] cookies = request.getCookies();
-        if (cookies != null) {
-            for (Cookie cookie : cookies) {
-                if ("refreshToken".equals(cookie.getName())) {
-                    refreshToken = cookie.getValue();
-                    break;
-                }
-            }
-        }
+        String refreshToken = getRefreshTokenCookie(request);
 
         if (refreshToken == null) {
             logger.warn("Refresh token not found in cookies during refresh request.");
@@ -211,31 +237,113 @@ public class AuthController {
         }
 
         try {
-            // Validate the refresh token
-            String username = jwtUtil.extractUsername(refreshToken);
+            // Validate the refresh token (verified once, then checked against the loaded user)
+            VerifiedClaims claims = jwtUtil.parseToken(refreshToken);
+            String username = claims.getSubject();
+            if (!claims.isRefreshToken() || claims.getTokenId() == null) {
+                logger.warn("Token without a refresh token id presented for refresh by user {}.", username);
+                return invalidRefreshToken();
+            }
+            // Cheap in-memory check first, so replayed tokens are turned away before any user lookup
+            if (refreshTokenRevocationService.isRevoked(claims.getTokenId())) {
+                logger.warn("Reuse of revoked refresh token {} for user {}.", claims.getTokenId(), username);
+                return invalidRefreshToken();
+            }
+            retryAfterSeconds = loginThrottleService.tryAcquireRefreshByUsername(username);
+            if (retryAfterSeconds > 0) {
+                logger.warn("Token refresh for user {} throttled; retry after {} s.", username, retryAfterSeconds);
+                return tooManyRequests(retryAfterSeconds);
+            }
             UserDetails userDetails = userDetailsService.loadUserByUsername(username);
 
-            if (jwtUtil.validateToken(refreshToken, userDetails)) {
-                // Generate a new access token
-                String newAccessToken = jwtUtil.generateAccessToken(userDetails);
+            if (userDetails.isEnabled() && jwtUtil.validateClaims(claims, userDetails)) {
+                // Consume the presented token; only one of several concurrent refreshes with it can win
+                if (!refreshTokenRevocationService.revokeIfAbsent(claims.getTokenId(), claims.getExpiresAt())) {
+                    logger.warn("Refresh token {} for user {} was used concurrently.", claims.getTokenId(), username);
+                    return invalidRefreshToken();
+                }
 
-                // Set the new access token as an HTTP-Only cookie
-                Cookie newAccessTokenCookie = new Cookie("accessToken", newAccessToken);
-                newAccessTokenCookie.setHttpOnly(true);
-                newAccessTokenCookie.setSecure(false); // Set to true in production with HTTPS
-                newAccessTokenCookie.setPath("/");
-                newAccessTokenCookie.setMaxAge((int) (jwtConfig.getAccessTokenExpirationMs() / 1000));
-                response.addCookie(newAccessTokenCookie);
+                // Generate a new access token and rotate the refresh token
+                String newAccessToken = jwtUtil.generateAccessToken(userDetails);
+                String newRefreshToken = jwtUtil.generateRefreshToken(userDetails);
+                addTokenCookies(response, newAccessToken, newRefreshToken);
 
                 logger.info("Access token refreshed successfully for user {}", username);
                 return ResponseEntity.ok(new ApiResponse(true, "Access token refreshed successfully!"));
             } else {
                 logger.warn("Invalid or expired refresh token for user {}.", username);
-                return new ResponseEntity<>(new ApiResponse(false, "Invalid or expired refresh token."), HttpStatus.UNAUTHORIZED);
+                return invalidRefreshToken();
             }
+        } catch (JwtException e) {
+            logger.warn("Invalid refresh token presented: {}", e.getMessage());
+            return invalidRefreshToken();
         } catch (Exception e) {
             logger.error("Error during token refresh: {}", e.getMessage(), e);
             return new ResponseEntity<>(new ApiResponse(false, "Error refreshing token."), HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
+
+    /**
+     * Reads the refresh token from the request's HTTP-only cookie.
+     * @param request The current HTTP request.
+     * @return The refresh token, or null if the cookie is absent.
+     */
+    private String getRefreshTokenCookie(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if ("refreshToken".equals(cookie.getName())) {
+                    return cookie.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sets the access and refresh tokens as HTTP-only cookies.
+     * @param response The response to add the cookies to.
+     * @param accessToken The new access token.
+     * @param refreshToken The new refresh token.
+     */
+    private void addTokenCookies(HttpServletResponse response, String accessToken, String refreshToken) {
+        Cookie accessTokenCookie = new Cookie("accessToken", accessToken);
+        accessTokenCookie.setHttpOnly(true); // IMPORTANT: Prevents client-side JS access (XSS protection)
+        accessTokenCookie.setSecure(false); // Set to true in production with HTTPS
+        accessTokenCookie.setPath("/"); // Accessible from all paths on the domain
+        accessTokenCookie.setMaxAge((int) (jwtConfig.getAccessTokenExpirationMs() / 1000)); // Max age in seconds
+        response.addCookie(accessTokenCookie);
+
+        Cookie refreshTokenCookie = new Cookie("refreshToken", refreshToken);
+        refreshTokenCookie.setHttpOnly(true); // IMPORTANT: Prevents client-side JS access
+        refreshTokenCookie.setSecure(false); // Set to true in production with HTTPS
+        refreshTokenCookie.setPath("/api/auth"); // Accessible from /api/auth and its sub-paths
+        refreshTokenCookie.setMaxAge((int) (jwtConfig.getRefreshTokenExpirationMs() / 1000));
+        response.addCookie(refreshTokenCookie);
+    }
+
+    private ResponseEntity<ApiResponse> invalidRefreshToken() {
+        return new ResponseEntity<>(new ApiResponse(false, "Invalid or expired refresh token."), HttpStatus.UNAUTHORIZED);
+    }
+
+    /**
+     * Builds the 429 response returned when a login or refresh attempt is throttled.
+     * @param retryAfterSeconds Seconds until the client may try again.
+     * @return ResponseEntity with a Retry-After header.
+     */
+    private ResponseEntity<ApiResponse> tooManyRequests(long retryAfterSeconds) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(new ApiResponse(false, "Too many attempts. Please try again later."));
+    }
+
+    /**
+     * Builds the 503 response returned when the password hashing pool rejects work.
+     * @return ResponseEntity telling the client to retry shortly.
+     */
+    private ResponseEntity<ApiResponse> serverBusy() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new ApiResponse(false, "Server is busy, please try again shortly."));
+    }
 }
@@ -1,6 +1,8 @@
 package com.au.cl.controller;
 
 import com.au.cl.dto.*;
+import com.au.cl.model.AttendanceCodeMode;
+import com.au.cl.model.Holiday;
 import com.au.cl.model.Mission.MissionStatus;
 import com.au.cl.model.Role;
 import com.au.cl.model.Transaction.TransactionType;
@@ -8,22 +10,30 @@ import com.au.cl.model.User;
 import com.au.cl.payload.response.ApiResponse;
 import com.au.cl.repository.UserRepository;
 import com.au.cl.service.*;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.crypto.password.PasswordEncoder; // Keep for password changes if handled here
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.YearMonth;
 import java.time.temporal.TemporalAdjusters;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
 /**
@@ -44,12 +54,20 @@ public class UserController {
     private final FeedbackService feedbackService;
     private final AnnouncementService announcementService;
     private final UserService userService; // New: Injected UserService
+    private final UserDetailsServiceImpl userDetailsService;
+    private final LoginThrottleService loginThrottleService;
+    private final WorkCalendar workCalendar;
+    private final PayrollService payrollService;
+    private final LedgerRollupReconciler ledgerReconciler;
 
     // Constructor injection for all dependencies
     public UserController(UserRepository userRepository, PasswordEncoder passwordEncoder,
                           TransactionService transactionService, MissionService missionService,
                           AttendanceService attendanceService, FeedbackService feedbackService,
-                          AnnouncementService announcementService, UserService userService) { // Added UserService
+                          AnnouncementService announcementService, UserService userService,
+                          UserDetailsServiceImpl userDetailsService, LoginThrottleService loginThrottleService,
+                          WorkCalendar workCalendar, PayrollService payrollService,
+                          LedgerRollupReconciler ledgerReconciler) { // Added UserService
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.transactionService = transactionService;
@@ -58,6 +76,11 @@ public class UserController {
         this.feedbackService = feedbackService;
         this.announcementService = announcementService;
         this.userService = userService; // Initialize new service
+        this.userDetailsService = userDetailsService;
+        this.loginThrottleService = loginThrottleService;
+        this.workCalendar = workCalendar;
+        this.payrollService = payrollService;
+        this.ledgerReconciler = ledgerReconciler;
     }
 
     /**
@@ -70,7 +93,7 @@ public class UserController {
     @GetMapping("/user/details")
     @PreAuthorize("hasAnyRole('AVENGER', 'ADMIN')") // Accessible by both ADMIN and AVENGER roles
     public ResponseEntity<Map<String, String>> getUserDetails(Authentication authentication) {
-        User user = (User) authentication.getPrincipal();
+        User user = userService.getFullUser((User) authentication.getPrincipal());
 
         Map<String, String> userDetails = new HashMap<>();
         userDetails.put("id", user.getId().toString()); // Include ID
@@ -101,6 +124,83 @@ public class UserController {
         return ResponseEntity.ok(avengers);
     }
 
+    /**
+     * Admin endpoint to set the alive status of a user. Users who are not alive can no longer sign in,
+     * and their existing access tokens stop being accepted.
+     * @param id The id of the user to update.
+     * @param request Map containing "alive".
+     * @return ResponseEntity with the updated UserDTO.
+     */
+    @PutMapping("/users/{id}/status")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<UserDTO> updateUserStatus(@PathVariable Long id, @RequestBody Map<String, Boolean> request) {
+        Boolean alive = request.get("alive");
+        if (alive == null) {
+            return new ResponseEntity<>(null, HttpStatus.BAD_REQUEST);
+        }
+        try {
+            return ResponseEntity.ok(userService.updateUserStatus(id, alive));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Status update failed for user {}: {}", id, e.getMessage());
+            return new ResponseEntity<>(null, HttpStatus.NOT_FOUND);
+        }
+    }
+
+    /**
+     * Admin endpoint to change the role of a user.
+     * @param id The id of the user to update.
+     * @param request Map containing "role" (ADMIN or AVENGER).
+     * @return ResponseEntity with the updated UserDTO.
+     */
+    @PutMapping("/users/{id}/role")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<UserDTO> updateUserRole(@PathVariable Long id, @RequestBody Map<String, String> request) {
+        Role role;
+        try {
+            role = Role.valueOf(String.valueOf(request.get("role")));
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(null, HttpStatus.BAD_REQUEST);
+        }
+        try {
+            return ResponseEntity.ok(userService.updateUserRole(id, role));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Role update failed for user {}: {}", id, e.getMessage());
+            return new ResponseEntity<>(null, HttpStatus.NOT_FOUND);
+        }
+    }
+
+    /**
+     * Admin endpoint exposing hit, miss and eviction counters of the user details cache.
+     * @return ResponseEntity with the cache statistics.
+     */
+    @GetMapping("/admin/metrics/user-cache")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getUserCacheMetrics() {
+        CacheStats cacheStats = userDetailsService.getCacheStats();
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("size", userDetailsService.getCacheSize());
+        metrics.put("hitCount", cacheStats.hitCount());
+        metrics.put("missCount", cacheStats.missCount());
+        metrics.put("hitRate", cacheStats.hitRate());
+        metrics.put("evictionCount", cacheStats.evictionCount());
+        return ResponseEntity.ok(metrics);
+    }
+
+    /**
+     * Admin endpoint exposing how many login and refresh attempts were throttled.
+     * @return ResponseEntity with the throttling counters.
+     */
+    @GetMapping("/admin/metrics/auth-throttle")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getAuthThrottleMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("throttledLoginsByIp", loginThrottleService.getThrottledLoginsByIp());
+        metrics.put("throttledLoginsByUsername", loginThrottleService.getThrottledLoginsByUsername());
+        metrics.put("throttledRefreshes", loginThrottleService.getThrottledRefreshes());
+        metrics.put("trackedKeys", loginThrottleService.getTrackedKeys());
+        return ResponseEntity.ok(metrics);
+    }
+
     @GetMapping("/admin/dashboard-stats")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<DashboardStatsDTO> getDashboardStats() {
@@ -117,6 +217,34 @@ public class UserController {
         return ResponseEntity.ok(stats);
     }
 
+    /**
+     * Admin endpoint to get payment totals per transaction type for a date range, answered from memory.
+     * Either period (e.g. LAST_7_DAYS, QUARTER_TO_DATE) or both from and to must be given.
+     * @param period A range relative to today.
+     * @param from The first day of a custom range (yyyy-MM-dd).
+     * @param to The last day of a custom range (yyyy-MM-dd).
+     * @return ResponseEntity with PaymentTotalsDTO.
+     */
+    @GetMapping("/admin/payments/totals")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getPaymentTotals(
+            @RequestParam(required = false) PaymentTotalsIndex.Period period,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LocalDate today = LocalDate.now();
+        if (period != null) {
+            from = period.startDate(today);
+            to = today;
+        } else if (from == null || to == null) {
+            return ResponseEntity.badRequest().body(new ApiResponse(false, "Either a period or both from and to are required."));
+        }
+        try {
+            return ResponseEntity.ok(transactionService.getPaymentTotals(from, to));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ApiResponse(false, e.getMessage()));
+        }
+    }
+
     @PostMapping("/admin/payments/send")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<ApiResponse> sendPayment(Authentication authentication, @Valid @RequestBody PaymentRequest request) {
@@ -133,6 +261,42 @@ public class UserController {
         }
     }
 
+    /**
+     * Admin endpoint to pay many users at once (e.g. monthly salaries). All payments are made, or none.
+     * @param authentication The Spring Security Authentication object of the current Admin.
+     * @param request The payments to make.
+     * @return ResponseEntity with a BulkPaymentResult (400 if any recipient is unknown, with nothing paid).
+     */
+    @PostMapping("/admin/payments/bulk")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> sendBulkPayment(Authentication authentication, @Valid @RequestBody BulkPaymentRequest request) {
+        User adminUser = (User) authentication.getPrincipal();
+        try {
+            BulkPaymentResult result = transactionService.sendBulkPayment(adminUser, request.getPayments());
+            return result.isApplied() ? ResponseEntity.ok(result) : ResponseEntity.badRequest().body(result);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Bulk payment failed for admin {}: {}", adminUser.getUsername(), e.getMessage());
+            return new ResponseEntity<>(new ApiResponse(false, e.getMessage()), HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            logger.error("Error processing bulk payment for admin {}: {}", adminUser.getUsername(), e.getMessage(), e);
+            return new ResponseEntity<>(new ApiResponse(false, "An unexpected error occurred during payment processing."), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Admin endpoint to check the daily ledger rollups against the transactions now, repairing any drift.
+     * @return ResponseEntity with the LedgerReconciliationReport (409 if a reconciliation is already running).
+     */
+    @PostMapping("/admin/ledger/reconcile")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> reconcileLedger() {
+        try {
+            return ResponseEntity.ok(ledgerReconciler.reconcile());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(new ApiResponse(false, e.getMessage()));
+        }
+    }
+
     @GetMapping("/admin/payments/history")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<List<TransactionDTO>> getAllPaymentHistory() {
@@ -165,12 +329,29 @@ public class UserController {
         return ResponseEntity.ok(missions);
     }
 
+    /**
+     * Admin endpoint to start an attendance session.
+     * @param request Optional body with "mode": STATIC (default, one code per session) or ROTATING
+     *                (code changes every attendance.rotating-code.step-seconds).
+     * @param authentication The Spring Security Authentication object of the current Admin.
+     * @return ResponseEntity with the session details and its (current) code.
+     */
     @PostMapping("/admin/attendance/start")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<AttendanceSessionResponse> startAttendanceSession(Authentication authentication) {
+    public ResponseEntity<AttendanceSessionResponse> startAttendanceSession(@RequestBody(required = false) Map<String, String> request,
+                                                                            Authentication authentication) {
         User adminUser = (User) authentication.getPrincipal();
+        AttendanceCodeMode codeMode = AttendanceCodeMode.STATIC;
+        if (request != null && request.get("mode") != null) {
+            try {
+                codeMode = AttendanceCodeMode.valueOf(request.get("mode").trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                logger.warn("Admin {} requested unknown attendance code mode {}.", adminUser.getUsername(), request.get("mode"));
+                return new ResponseEntity<>(null, HttpStatus.BAD_REQUEST);
+            }
+        }
         try {
-            AttendanceSessionResponse response = attendanceService.startAttendanceSession(adminUser);
+            AttendanceSessionResponse response = attendanceService.startAttendanceSession(adminUser, codeMode);
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             logger.error("Error starting attendance session for admin {}: {}", adminUser.getUsername(), e.getMessage(), e);
@@ -178,6 +359,59 @@ public class UserController {
         }
     }
 
+    /**
+     * Admin endpoint returning the code a ROTATING attendance session is showing right now.
+     * @param sessionId The session id.
+     * @return ResponseEntity with the current code and the seconds until it changes.
+     */
+    @GetMapping("/admin/attendance/{sessionId}/code")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getCurrentAttendanceCode(@PathVariable Long sessionId) {
+        try {
+            return ResponseEntity.ok(attendanceService.getCurrentRotatingCode(sessionId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ApiResponse(false, e.getMessage()));
+        }
+    }
+
+    /**
+     * Admin endpoint to watch an active attendance session live (Server-Sent Events).
+     * Streams "status" (count, seconds remaining), "mark" and "closed" events until the session ends.
+     * @param sessionId The session id.
+     * @return ResponseEntity with the event stream, or 404 if the session is not active.
+     */
+    @GetMapping(value = "/admin/attendance/{sessionId}/live", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<SseEmitter> watchAttendanceSession(@PathVariable Long sessionId, Authentication authentication) {
+        try {
+            SseEmitter emitter = attendanceService.subscribeToSession(sessionId);
+            logger.info("Admin {} is watching attendance session {} live.", authentication.getName(), sessionId);
+            return ResponseEntity.ok(emitter);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Admin {} tried to watch attendance session {}: {}", authentication.getName(), sessionId, e.getMessage());
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * Admin endpoint to mark attendance of many Avengers for a session at once (kiosk or paper-list sync).
+     * @param sessionId The session id.
+     * @param request The Avengers' user ids and, optionally, when they were present.
+     * @return ResponseEntity with a BulkAttendanceResult holding one outcome per user.
+     */
+    @PostMapping("/admin/attendance/{sessionId}/bulk-mark")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> bulkMarkAttendance(@PathVariable Long sessionId, @Valid @RequestBody BulkAttendanceRequest request,
+                                                Authentication authentication) {
+        try {
+            BulkAttendanceResult result = attendanceService.bulkMarkAttendance(sessionId, request.getUserIds(), request.getMarkedAt());
+            logger.info("Admin {} bulk-marked {} Avengers for attendance session {}.", authentication.getName(), result.getMarkedCount(), sessionId);
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ApiResponse(false, e.getMessage()));
+        }
+    }
+
     @GetMapping("/admin/attendance/records")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<List<AttendanceRecordDTO>> getAllAttendanceRecords() {
@@ -186,6 +420,32 @@ public class UserController {
         return ResponseEntity.ok(records);
     }
 
+    /**
+     * Admin endpoint to page through attendance records, newest first.
+     * @param sessionId Only records of this session (optional).
+     * @param userId Only records of this Avenger (optional).
+     * @param from Only records marked at or after this time (optional, ISO date-time).
+     * @param to Only records marked before this time (optional, ISO date-time).
+     * @param cursor The nextCursor of the previous page (optional).
+     * @param limit The page size (at most 200).
+     * @return ResponseEntity with a CursorPage of AttendanceRecordDTOs.
+     */
+    @GetMapping("/admin/attendance/records/page")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getAttendanceRecordPage(
+            @RequestParam(required = false) Long sessionId,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        try {
+            return ResponseEntity.ok(attendanceService.getAttendanceRecordPage(sessionId, userId, from, to, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ApiResponse(false, e.getMessage()));
+        }
+    }
+
     @GetMapping("/admin/feedback")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<List<FeedbackDTO>> getAllFeedback() {
@@ -230,6 +490,125 @@ public class UserController {
         return ResponseEntity.ok(announcements);
     }
 
+    /**
+     * Admin endpoint to list the stored holidays of the work calendar.
+     * @return ResponseEntity with a list of Holidays in date order.
+     */
+    @GetMapping("/admin/holidays")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<Holiday>> getHolidays() {
+        List<Holiday> holidays = workCalendar.getHolidays();
+        logger.info("Admin fetched {} holidays.", holidays.size());
+        return ResponseEntity.ok(holidays);
+    }
+
+    /**
+     * Admin endpoint to add (or rename) a holiday. Attendance stats use it as soon as it is saved.
+     * @param request The holiday's date and name.
+     * @return ResponseEntity with the saved Holiday.
+     */
+    @PostMapping("/admin/holidays")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Holiday> addHoliday(@Valid @RequestBody HolidayRequest request) {
+        Holiday holiday = workCalendar.addHoliday(request.getDate(), request.getName().trim());
+        return new ResponseEntity<>(holiday, HttpStatus.CREATED);
+    }
+
+    /**
+     * Admin endpoint to remove a holiday.
+     * @param date The holiday's date (yyyy-MM-dd).
+     * @return ResponseEntity indicating success or failure.
+     */
+    @DeleteMapping("/admin/holidays/{date}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse> removeHoliday(@PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        try {
+            workCalendar.removeHoliday(date);
+            return ResponseEntity.ok(new ApiResponse(true, "Holiday removed successfully."));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ApiResponse(false, e.getMessage()));
+        }
+    }
+
+    /**
+     * Admin endpoint to set (or change) an Avenger's monthly salary, paid by the monthly payroll run.
+     * @param authentication The Spring Security Authentication object of the current Admin.
+     * @param userId The Avenger's id.
+     * @param request The monthly amount, description and active flag.
+     * @return ResponseEntity with the saved SalaryScheduleDTO.
+     */
+    @PutMapping("/admin/payroll/schedules/{userId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> saveSalarySchedule(Authentication authentication, @PathVariable Long userId,
+                                                @Valid @RequestBody SalaryScheduleRequest request) {
+        try {
+            return ResponseEntity.ok(payrollService.saveSchedule((User) authentication.getPrincipal(), userId, request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ApiResponse(false, e.getMessage()));
+        }
+    }
+
+    @GetMapping("/admin/payroll/schedules")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<SalaryScheduleDTO>> getSalarySchedules() {
+        List<SalaryScheduleDTO> schedules = payrollService.getSchedules();
+        logger.info("Admin fetched {} salary schedules.", schedules.size());
+        return ResponseEntity.ok(schedules);
+    }
+
+    /**
+     * Admin endpoint to stop paying an Avenger's salary.
+     * @param userId The Avenger's id.
+     * @return ResponseEntity indicating success or failure.
+     */
+    @DeleteMapping("/admin/payroll/schedules/{userId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse> deactivateSalarySchedule(@PathVariable Long userId) {
+        try {
+            payrollService.deactivateSchedule(userId);
+            return ResponseEntity.ok(new ApiResponse(true, "Salary schedule deactivated successfully."));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ApiResponse(false, e.getMessage()));
+        }
+    }
+
+    /**
+     * Admin endpoint to start a month's payroll run now instead of waiting for the pay day.
+     * The run is paid in the background; poll GET /admin/payroll/runs/{id} for progress.
+     * @param month The month to pay (yyyy-MM).
+     * @return ResponseEntity with the new PayrollRunDTO (409 if the month already has a run).
+     */
+    @PostMapping("/admin/payroll/runs")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> startPayrollRun(@RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth month) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(payrollService.startRun(month));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(new ApiResponse(false, e.getMessage()));
+        }
+    }
+
+    @GetMapping("/admin/payroll/runs")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<PayrollRunDTO>> getPayrollRuns() {
+        return ResponseEntity.ok(payrollService.getRuns());
+    }
+
+    /**
+     * Admin endpoint to get a payroll run with its progress and throughput.
+     * @param runId The run id.
+     * @return ResponseEntity with the PayrollRunDTO.
+     */
+    @GetMapping("/admin/payroll/runs/{runId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getPayrollRun(@PathVariable Long runId) {
+        try {
+            return ResponseEntity.ok(payrollService.getRun(runId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ApiResponse(false, e.getMessage()));
+        }
+    }
+
     // --- Avenger Specific Endpoints (NEW) ---
 
     /**
@@ -252,7 +631,7 @@ public class UserController {
         stats.put("activeMissions", activeMissions);
         stats.put("completedMissions", completedMissions);
         stats.put("attendanceRate", attendanceStats.getAttendanceRate());
-        stats.put("currentBalance", avengerUser.getBalance()); // Current balance from User object
+        stats.put("currentBalance", userService.getFullUser(avengerUser).getBalance()); // Current balance from User object
 
         logger.info("Avenger {} fetched dashboard stats.", avengerUser.getUsername());
         return ResponseEntity.ok(stats);
@@ -287,13 +666,31 @@ public class UserController {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new ApiResponse(false, "Attendance code cannot be empty."));
         }
 
+        // Optional: the session a rotating code belongs to
+        Long sessionId = null;
+        if (attendanceRequest.get("sessionId") != null) {
+            try {
+                sessionId = Long.valueOf(attendanceRequest.get("sessionId").trim());
+            } catch (NumberFormatException e) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new ApiResponse(false, "Invalid attendance session id."));
+            }
+        }
+
         User avengerUser = (User) authentication.getPrincipal();
         try {
-            attendanceService.markAttendance(avengerUser, code);
+            attendanceService.markAttendance(avengerUser, code.trim(), sessionId);
             return ResponseEntity.ok(new ApiResponse(true, "Attendance marked successfully!"));
         } catch (IllegalArgumentException e) {
             logger.warn("Avenger {} failed to mark attendance: {}", avengerUser.getUsername(), e.getMessage());
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new ApiResponse(false, e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            logger.warn("Attendance mark for Avenger {} rejected: write-behind buffer is full.", avengerUser.getUsername());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(new ApiResponse(false, "Server is busy, please try again shortly."));
+        } catch (DataIntegrityViolationException e) {
+            // The unique (session_id, user_id) key caught a duplicate the in-memory index did not know about
+            logger.warn("Avenger {} already has an attendance record for code {}.", avengerUser.getUsername(), code);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new ApiResponse(false, "You have already marked attendance for this session."));
         } catch (Exception e) {
             logger.error("Error marking attendance for Avenger {}: {}", avengerUser.getUsername(), e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new ApiResponse(false, "An unexpected error occurred during attendance marking."));
@@ -314,6 +711,33 @@ public class UserController {
         return ResponseEntity.ok(records);
     }
 
+    /**
+     * Avenger endpoint to page through their attendance history, newest first.
+     * @param authentication The Spring Security Authentication object of the current Avenger.
+     * @param sessionId Only the record of this session (optional).
+     * @param from Only records marked at or after this time (optional, ISO date-time).
+     * @param to Only records marked before this time (optional, ISO date-time).
+     * @param cursor The nextCursor of the previous page (optional).
+     * @param limit The page size (at most 200).
+     * @return ResponseEntity with a CursorPage of AttendanceRecordDTOs.
+     */
+    @GetMapping("/avenger/attendance/history/page")
+    @PreAuthorize("hasRole('AVENGER')")
+    public ResponseEntity<?> getMyAttendanceHistoryPage(
+            Authentication authentication,
+            @RequestParam(required = false) Long sessionId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        User avengerUser = (User) authentication.getPrincipal();
+        try {
+            return ResponseEntity.ok(attendanceService.getAttendanceRecordPage(sessionId, avengerUser.getId(), from, to, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ApiResponse(false, e.getMessage()));
+        }
+    }
+
     /**
      * Avenger endpoint to get their attendance stats for a specific month.
      * @param authentication The Spring Security Authentication object of the current Avenger.
@@ -335,6 +759,41 @@ public class UserController {
         return ResponseEntity.ok(stats);
     }
 
+    /**
+     * Avenger endpoint to get their attendance stats for every month of a year (up to the current month).
+     * @param authentication The Spring Security Authentication object of the current Avenger.
+     * @param year The year for which to get stats.
+     * @return ResponseEntity with a list of MonthlyAttendanceStatsDTOs, in month order.
+     */
+    @GetMapping("/avenger/attendance/stats/{year}")
+    @PreAuthorize("hasRole('AVENGER')")
+    public ResponseEntity<List<MonthlyAttendanceStatsDTO>> getMyYearlyAttendanceStats(
+            Authentication authentication,
+            @PathVariable int year) {
+        User avengerUser = (User) authentication.getPrincipal();
+        List<MonthlyAttendanceStatsDTO> stats = attendanceService.getYearlyAttendanceStatsForAvenger(avengerUser, year);
+        logger.info("Avenger {} fetched attendance stats for {} months of {}.", avengerUser.getUsername(), stats.size(), year);
+        return ResponseEntity.ok(stats);
+    }
+
+    /**
+     * Avenger endpoint to get their attendance calendar for a year, as one day-bitmap per month.
+     * @param authentication The Spring Security Authentication object of the current Avenger.
+     * @param year The year of the calendar.
+     * @return ResponseEntity with AttendanceCalendarDTO.
+     */
+    @GetMapping("/avenger/attendance/calendar/{year}")
+    @PreAuthorize("hasRole('AVENGER')")
+    public ResponseEntity<AttendanceCalendarDTO> getMyAttendanceCalendar(
+            Authentication authentication,
+            @PathVariable int year) {
+        User avengerUser = (User) authentication.getPrincipal();
+        AttendanceCalendarDTO calendar = attendanceService.getAttendanceCalendarForAvenger(avengerUser, year);
+        logger.info("Avenger {} fetched attendance calendar for {}: Current streak: {}, Longest streak: {}",
+                avengerUser.getUsername(), year, calendar.getCurrentStreak(), calendar.getLongestStreak());
+        return ResponseEntity.ok(calendar);
+    }
+
     /**
      * Avenger endpoint to get their transaction history.
      * @param authentication The Spring Security Authentication object of the current Avenger.
@@ -349,6 +808,49 @@ public class UserController {
         return ResponseEntity.ok(transactions);
     }
 
+    /**
+     * Avenger endpoint to page through their transaction history (sent and received), newest first.
+     * @param authentication The Spring Security Authentication object of the current Avenger.
+     * @param cursor The nextCursor of the previous page (optional).
+     * @param limit The page size (at most 200).
+     * @return ResponseEntity with a CursorPage of TransactionDTOs.
+     */
+    @GetMapping("/avenger/transactions/history/page")
+    @PreAuthorize("hasRole('AVENGER')")
+    public ResponseEntity<?> getMyTransactionHistoryPage(
+            Authentication authentication,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        User avengerUser = (User) authentication.getPrincipal();
+        try {
+            return ResponseEntity.ok(transactionService.getTransactionHistoryPage(avengerUser, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ApiResponse(false, e.getMessage()));
+        }
+    }
+
+    /**
+     * Avenger endpoint to send money to another Avenger.
+     * @param authentication The Spring Security Authentication object of the current Avenger.
+     * @param request The recipient, amount and optional description.
+     * @return ResponseEntity indicating success or failure of the transfer.
+     */
+    @PostMapping("/avenger/transfers")
+    @PreAuthorize("hasRole('AVENGER')")
+    public ResponseEntity<ApiResponse> transfer(Authentication authentication, @Valid @RequestBody TransferRequest request) {
+        User avengerUser = (User) authentication.getPrincipal();
+        try {
+            transactionService.transfer(avengerUser, request);
+            return ResponseEntity.ok(new ApiResponse(true, "Transfer completed successfully!"));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Transfer failed for Avenger {}: {}", avengerUser.getUsername(), e.getMessage());
+            return new ResponseEntity<>(new ApiResponse(false, e.getMessage()), HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            logger.error("Error processing transfer for Avenger {}: {}", avengerUser.getUsername(), e.getMessage(), e);
+            return new ResponseEntity<>(new ApiResponse(false, "An unexpected error occurred during the transfer."), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
     /**
      * Avenger endpoint to get their monthly earnings.
      * @param authentication The Spring Security Authentication object of the current Avenger.
@@ -373,6 +875,21 @@ public class UserController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Avenger endpoint to get their earnings for every month of a year.
+     * @param authentication The Spring Security Authentication object of the current Avenger.
+     * @param year The year for which to get earnings.
+     * @return ResponseEntity with twelve MonthlyEarningsDTOs, in month order.
+     */
+    @GetMapping("/avenger/earnings/{year}")
+    @PreAuthorize("hasRole('AVENGER')")
+    public ResponseEntity<List<MonthlyEarningsDTO>> getYearlyEarnings(Authentication authentication, @PathVariable int year) {
+        User avengerUser = (User) authentication.getPrincipal();
+        List<MonthlyEarningsDTO> earnings = transactionService.getYearlyEarningsForAvenger(avengerUser, year);
+        logger.info("Avenger {} fetched monthly earnings for {}.", avengerUser.getUsername(), year);
+        return ResponseEntity.ok(earnings);
+    }
+
     /**
      * Avenger endpoint to submit feedback.
      * @param authentication The Spring Security Authentication object of the current Avenger.
@@ -459,6 +976,10 @@ public class UserController {
         try {
             userService.changePassword(avengerUser, newPassword);
             return ResponseEntity.ok(new ApiResponse(true, "Password changed successfully!"));
+        } catch (RejectedExecutionException e) {
+            logger.warn("Password change for Avenger {} rejected: hashing pool is busy.", avengerUser.getUsername());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(new ApiResponse(false, "Server is busy, please try again shortly."));
         } catch (Exception e) {
             logger.error("Error changing password for Avenger {}: {}", avengerUser.getUsername(), e.getMessage(), e);
             return new ResponseEntity<>(new ApiResponse(false, "An unexpected error occurred during password change."), HttpStatus.INTERNAL_SERVER_ERROR);
@@ -0,0 +1,21 @@
+package com.au.cl.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO to hold a year of an Avenger's attendance as day-bitmaps.
+ * Element (month - 1) of each array is a bitmap of that month; bit (day - 1) is set for every matching day.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AttendanceCalendarDTO {
+    private int year;
+    private int[] presentDays; // Days with at least one attendance record
+    private int[] workDays; // Days that count for attendance
+    private AttendanceStatsDTO stats; // Totals for the year, up to today
+    private int currentStreak; // Workdays attended in a row, up to today
+    private int longestStreak; // Longest run of attended workdays in the year
+}
@@ -19,4 +19,5 @@ public class AttendanceRecordDTO {
     private String sessionCode; // To display the code
     private String avengerUsername;
     private LocalDateTime markedAt;
+    private Long avengerId;
 }
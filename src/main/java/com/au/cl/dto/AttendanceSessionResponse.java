@@ -1,5 +1,6 @@
 package com.au.cl.dto;
 
+import com.au.cl.model.AttendanceCodeMode;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
@@ -17,5 +18,7 @@ public class AttendanceSessionResponse {
     private String attendanceCode;
     private LocalDateTime startTime;
     private LocalDateTime endTime;
+    private AttendanceCodeMode codeMode;
+    private Long codeStepSeconds; // How often the code changes; null for STATIC sessions
     private String message;
 }
@@ -0,0 +1,26 @@
+package com.au.cl.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DTO for marking attendance of many Avengers at once (kiosk or paper-list reconciliation).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkAttendanceRequest {
+    @NotEmpty(message = "User ids cannot be empty.")
+    @Size(max = 1000, message = "At most 1000 users can be marked at once.")
+    private List<@NotNull Long> userIds;
+
+    // Optional: when the Avengers were present. Defaults to now for an open session, else the session's start time.
+    private LocalDateTime markedAt;
+}
@@ -0,0 +1,34 @@
+package com.au.cl.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO with the outcome of a bulk attendance mark, one entry per requested user id.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkAttendanceResult {
+    private Long sessionId;
+    private int markedCount;
+    private List<UserOutcome> outcomes;
+
+    public enum Outcome {
+        MARKED,
+        ALREADY_MARKED,
+        UNKNOWN_USER,
+        NOT_AN_AVENGER
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class UserOutcome {
+        private Long userId;
+        private Outcome outcome;
+    }
+}
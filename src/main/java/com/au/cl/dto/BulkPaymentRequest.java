@@ -0,0 +1,23 @@
+package com.au.cl.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO for paying many Avengers at once (e.g. monthly salaries).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkPaymentRequest {
+    @NotEmpty(message = "Payments cannot be empty.")
+    @Size(max = 10000, message = "At most 10000 payments can be sent at once.")
+    private List<@Valid @NotNull PaymentRequest> payments;
+}
@@ -0,0 +1,37 @@
+package com.au.cl.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO with the outcome of a bulk payout, one entry per requested payment in request order.
+ * A bulk payout is all or nothing: if any entry is rejected, applied is false and no payment was made.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkPaymentResult {
+    private boolean applied;
+    private int paidCount;
+    private double totalAmount;
+    private List<EntryResult> results;
+
+    public enum Outcome {
+        PAID,
+        UNKNOWN_RECIPIENT,
+        NOT_APPLIED // Valid, but not paid because another entry was rejected
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class EntryResult {
+        private int index;
+        private String recipientUsername;
+        private Double amount;
+        private Outcome outcome;
+    }
+}
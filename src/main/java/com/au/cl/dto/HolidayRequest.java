@@ -0,0 +1,25 @@
+package com.au.cl.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * DTO for adding a holiday to the work calendar.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HolidayRequest {
+    @NotNull(message = "Date cannot be empty.")
+    private LocalDate date;
+
+    @NotBlank(message = "Name cannot be blank.")
+    @Size(max = 255, message = "Name cannot exceed 255 characters.")
+    private String name;
+}
@@ -0,0 +1,40 @@
+package com.au.cl.dto;
+
+import com.au.cl.model.Transaction.TransactionType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DTO with the outcome of a ledger reconciliation: how far ledger_daily_rollup had drifted from the raw transactions.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LedgerReconciliationReport {
+    private LocalDateTime startedAt;
+    private long durationMillis;
+    private int partitions;
+    private int usersChecked;
+    private long rowsChecked; // Distinct (user, type, day) keys compared
+    private long driftedRows;
+    private boolean repaired; // Whether drifted rows were rewritten from the transactions
+    private List<Drift> drifts; // The first drifted rows only, see LedgerRollupReconciler
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Drift {
+        private Long userId;
+        private TransactionType transactionType;
+        private LocalDate date;
+        private long expectedCount; // From the transactions
+        private double expectedAmount;
+        private long actualCount; // From the rollup, 0 if the row was missing
+        private double actualAmount;
+    }
+}
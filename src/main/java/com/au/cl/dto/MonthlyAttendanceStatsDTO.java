@@ -0,0 +1,23 @@
+package com.au.cl.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO to hold attendance statistics of an Avenger for one month of a multi-month range.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MonthlyAttendanceStatsDTO {
+    private int year;
+    private int month; // 1-12
+    private long daysPresent;
+    private long daysAbsent;
+    private double attendanceRate; // Percentage
+    private LocalDateTime firstMarkedAt; // Null if the Avenger never marked in this month
+    private LocalDateTime lastMarkedAt;
+}
@@ -0,0 +1,18 @@
+package com.au.cl.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO to hold the earnings of an Avenger for one month of a year.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MonthlyEarningsDTO {
+    private int year;
+    private int month; // 1-12
+    private long paymentCount; // Payments received in the month
+    private double totalEarnings;
+}
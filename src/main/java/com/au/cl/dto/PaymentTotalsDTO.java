@@ -0,0 +1,22 @@
+package com.au.cl.dto;
+
+import com.au.cl.model.Transaction.TransactionType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * DTO to hold the payment totals of a date range for the admin dashboard.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentTotalsDTO {
+    private LocalDate fromDate; // Inclusive
+    private LocalDate toDate; // Inclusive
+    private Map<TransactionType, Double> totalsByType;
+    private double total;
+}
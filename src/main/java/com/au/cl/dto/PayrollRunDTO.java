@@ -0,0 +1,29 @@
+package com.au.cl.dto;
+
+import com.au.cl.model.PayrollRunStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO for displaying a payroll run with its progress and throughput.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PayrollRunDTO {
+    private Long id;
+    private int year;
+    private int month;
+    private PayrollRunStatus status;
+    private int totalChunks;
+    private long completedChunks;
+    private double percentComplete;
+    private long paidCount; // Salaries paid so far
+    private double totalAmount;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private double paymentsPerSecond; // Over the run so far (or the whole run once finished)
+}
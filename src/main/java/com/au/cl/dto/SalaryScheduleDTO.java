@@ -0,0 +1,22 @@
+package com.au.cl.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO for displaying an Avenger's salary schedule.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalaryScheduleDTO {
+    private Long userId;
+    private String username;
+    private Double monthlyAmount;
+    private String description;
+    private Boolean active;
+    private LocalDateTime updatedAt;
+}
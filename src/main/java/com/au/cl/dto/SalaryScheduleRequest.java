@@ -0,0 +1,25 @@
+package com.au.cl.dto;
+
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for setting an Avenger's monthly salary.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalaryScheduleRequest {
+    @NotNull(message = "Monthly amount cannot be null.")
+    @DecimalMin(value = "0.01", message = "Monthly amount must be greater than 0.")
+    private Double monthlyAmount;
+
+    @Size(max = 500, message = "Description cannot exceed 500 characters.")
+    private String description; // Optional
+
+    private Boolean active = true;
+}
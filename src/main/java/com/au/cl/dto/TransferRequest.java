@@ -0,0 +1,27 @@
+package com.au.cl.dto;
+
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for an Avenger sending money to another Avenger.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferRequest {
+    @NotBlank(message = "Recipient username cannot be blank.")
+    private String recipientUsername;
+
+    @NotNull(message = "Amount cannot be null.")
+    @DecimalMin(value = "0.01", message = "Amount must be greater than 0.")
+    private Double amount;
+
+    @Size(max = 500, message = "Description cannot exceed 500 characters.")
+    private String description; // Optional
+}
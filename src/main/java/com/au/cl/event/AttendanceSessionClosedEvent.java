@@ -0,0 +1,21 @@
+package com.au.cl.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published once per attendance session when it is closed at its end time, after the close has committed.
+ * With several instances, only the instance that closed the session publishes it.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class AttendanceSessionClosedEvent {
+    private final Long sessionId;
+    private final String attendanceCode; // Null for rotating-code sessions
+    private final LocalDateTime endTime;
+    private final long attendeeCount;    // Final number of attendance records of the session
+}
@@ -0,0 +1,24 @@
+package com.au.cl.event;
+
+import com.au.cl.model.Transaction.TransactionType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Published when transaction rows are written, with their amounts summed per type and day
+ * (one entry per receiver, so a type and day can appear more than once).
+ * Listeners that keep derived totals (PaymentTotalsIndex) apply it after the transaction commits.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class PaymentsRecordedEvent {
+    private final List<DailyTotal> totals;
+
+    public record DailyTotal(TransactionType type, LocalDate date, double amount) {
+    }
+}
@@ -0,0 +1,16 @@
+package com.au.cl.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published after the work calendar swapped in a new set of holidays, so anything derived from
+ * workday counts (e.g. cached attendance stats) can be recomputed.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class WorkCalendarChangedEvent {
+    private final int holidayCount; // Holidays in the new calendar (configured and stored)
+}
@@ -1,7 +1,11 @@
 package com.au.cl.filter;
 
+import com.au.cl.model.Role;
+import com.au.cl.model.User;
+import com.au.cl.service.SecurityVersionService;
 import com.au.cl.service.UserDetailsServiceImpl;
 import com.au.cl.util.JwtUtil;
+import com.au.cl.util.VerifiedClaims;
 
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -11,6 +15,7 @@ import jakarta.servlet.http.HttpServletResponse;
 
 import org.slf4j.Logger; // Import for logging
 import org.slf4j.LoggerFactory; // Import for logging
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -32,11 +37,20 @@ public class JwtRequestFilter extends OncePerRequestFilter {
 
     private final UserDetailsServiceImpl userDetailsService;
     private final JwtUtil jwtUtil;
+    private final SecurityVersionService securityVersionService;
+
+    // When enabled, the principal is built from the access token claims and the database is only
+    // consulted if the token's security version is no longer current (disabled user, password or role change).
+    private final boolean statelessEnabled;
 
     // Constructor injection for dependencies
-    public JwtRequestFilter(UserDetailsServiceImpl userDetailsService, JwtUtil jwtUtil) {
+    public JwtRequestFilter(UserDetailsServiceImpl userDetailsService, JwtUtil jwtUtil,
+                            SecurityVersionService securityVersionService,
+                            @Value("${jwt.stateless.enabled:false}") boolean statelessEnabled) {
         this.userDetailsService = userDetailsService;
         this.jwtUtil = jwtUtil;
+        this.securityVersionService = securityVersionService;
+        this.statelessEnabled = statelessEnabled;
     }
 
     /**
@@ -56,6 +70,7 @@ public class JwtRequestFilter extends OncePerRequestFilter {
 
         String accessToken = null;
         String username = null;
+        VerifiedClaims claims = null;
 
         logger.debug("Processing request for URI: {}", request.getRequestURI());
 
@@ -80,11 +95,17 @@ public class JwtRequestFilter extends OncePerRequestFilter {
             }
         }
 
-        // 3. If an Access Token is found, attempt to extract username and validate
+        // 3. If an Access Token is found, verify it once and read the username from the verified claims
         if (accessToken != null) {
             try {
-                username = jwtUtil.extractUsername(accessToken);
-                logger.debug("Username '{}' extracted from token for URI: {}", username, request.getRequestURI());
+                claims = jwtUtil.parseToken(accessToken);
+                if (claims.isRefreshToken()) {
+                    // Refresh tokens are only accepted by /api/auth/refresh, never as access tokens
+                    logger.warn("Refresh token presented as access token for URI: {}", request.getRequestURI());
+                } else {
+                    username = claims.getSubject();
+                    logger.debug("Username '{}' extracted from token for URI: {}", username, request.getRequestURI());
+                }
             } catch (Exception e) {
                 // Log the exception if token extraction fails (e.g., malformed, expired, invalid signature)
                 logger.warn("Error extracting username or invalid JWT (Access Token) for URI {}: {}", request.getRequestURI(), e.getMessage());
@@ -96,16 +117,31 @@ public class JwtRequestFilter extends OncePerRequestFilter {
         // 4. If a username is extracted and no authentication is currently set in the SecurityContext
         if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
             UserDetails userDetails = null;
-            try {
-                userDetails = this.userDetailsService.loadUserByUsername(username);
-                logger.debug("UserDetails loaded for user '{}' for URI: {}", username, request.getRequestURI());
-            } catch (UsernameNotFoundException e) {
-                logger.warn("User '{}' not found in DB for username extracted from token for URI: {}", username, request.getRequestURI());
-                // No need to set authentication if user not found.
+
+            // 4a. Stateless mode: trust the verified claims while the user's security version is unchanged
+            if (statelessEnabled && securityVersionService.isCurrent(claims.getUserId(), claims.getSecurityVersion())
+                    && claims.getRoles().size() == 1) {
+                userDetails = User.fromClaims(claims.getUserId(), username, Role.valueOf(claims.getRoles().get(0)), claims.getSecurityVersion());
+                logger.debug("Principal for user '{}' built from token claims for URI: {}", username, request.getRequestURI());
+            }
+
+            // 4b. Otherwise load the user from the database
+            if (userDetails == null) {
+                try {
+                    userDetails = this.userDetailsService.loadUserByUsername(username);
+                    logger.debug("UserDetails loaded for user '{}' for URI: {}", username, request.getRequestURI());
+                } catch (UsernameNotFoundException e) {
+                    logger.warn("User '{}' not found in DB for username extracted from token for URI: {}", username, request.getRequestURI());
+                    // No need to set authentication if user not found.
+                }
+                if (userDetails != null && !userDetails.isEnabled()) {
+                    logger.warn("User '{}' is disabled; ignoring access token for URI: {}", username, request.getRequestURI());
+                    userDetails = null;
+                }
             }
 
 
-            if (userDetails != null && jwtUtil.validateToken(accessToken, userDetails)) {
+            if (userDetails != null && jwtUtil.validateClaims(claims, userDetails)) {
                 // If the token is valid, create an authentication token
                 UsernamePasswordAuthenticationToken usernamePasswordAuthenticationToken = new UsernamePasswordAuthenticationToken(
                         userDetails, null, userDetails.getAuthorities());
@@ -0,0 +1,9 @@
+package com.au.cl.model;
+
+/**
+ * How the code of an attendance session is produced.
+ */
+public enum AttendanceCodeMode {
+    STATIC,  // One 6-digit code for the whole session
+    ROTATING // Code derived from a per-session secret, changing every attendance.rotating-code.step-seconds
+}
@@ -0,0 +1,51 @@
+package com.au.cl.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Per-user, per-month attendance summary, maintained in the same transaction as every new attendance record.
+ * Written only through AttendanceRecordBatchWriter's upsert; read-only as an entity.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "attendance_monthly_rollups")
+@IdClass(AttendanceMonthlyRollup.AttendanceMonthlyRollupId.class)
+public class AttendanceMonthlyRollup {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Id
+    @Column(name = "period")
+    private Integer period; // year * 100 + month, e.g. 202607
+
+    @Column(name = "present_days_mask", nullable = false)
+    private Integer presentDaysMask; // Bit (day - 1) is set for every day of the month with at least one record
+
+    @Column(name = "days_present", nullable = false)
+    private Integer daysPresent; // Number of distinct days with a record (bits set in presentDaysMask)
+
+    @Column(name = "first_marked_at", nullable = false)
+    private LocalDateTime firstMarkedAt;
+
+    @Column(name = "last_marked_at", nullable = false)
+    private LocalDateTime lastMarkedAt;
+
+    // Composite Primary Key Class
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class AttendanceMonthlyRollupId implements Serializable {
+        private Long userId;
+        private Integer period;
+    }
+}
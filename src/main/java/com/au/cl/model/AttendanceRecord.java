@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import org.springframework.data.domain.Persistable;
 
 import java.io.Serializable;
 import java.time.LocalDateTime;
@@ -14,7 +15,7 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "attendance_records")
 @IdClass(AttendanceRecord.AttendanceRecordId.class) // Specify composite primary key class
-public class AttendanceRecord {
+public class AttendanceRecord implements Persistable<AttendanceRecord.AttendanceRecordId> {
 
     @Id
     @ManyToOne(fetch = FetchType.LAZY)
@@ -29,6 +30,26 @@ public class AttendanceRecord {
     @Column(name = "marked_at", nullable = false)
     private LocalDateTime markedAt = LocalDateTime.now();
 
+    // Records are only ever inserted, so save() can persist directly instead of merging (which would SELECT first)
+    @Transient
+    private boolean newRecord = true;
+
+    @Override
+    public AttendanceRecordId getId() {
+        return new AttendanceRecordId(session == null ? null : session.getId(), user == null ? null : user.getId());
+    }
+
+    @Override
+    public boolean isNew() {
+        return newRecord;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.newRecord = false;
+    }
+
     // Composite Primary Key Class
     @Data
     @NoArgsConstructor
@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import lombok.ToString;
 
 import java.time.LocalDateTime;
 
@@ -22,8 +23,18 @@ public class AttendanceSession {
     @JoinColumn(name = "admin_user_id", nullable = false)
     private User adminUser; // Admin who started the session
 
-    @Column(name = "attendance_code", nullable = false, unique = true, length = 6)
-    private String attendanceCode; // The 6-digit code
+    // The 6-digit code. Unique among active sessions only (see TablesSchema.txt), so codes are reused over time.
+    // Null for ROTATING sessions, whose code is derived from codeSecret and the time instead.
+    @Column(name = "attendance_code", length = 6)
+    private String attendanceCode;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "code_mode", nullable = false)
+    private AttendanceCodeMode codeMode = AttendanceCodeMode.STATIC;
+
+    @ToString.Exclude
+    @Column(name = "code_secret", length = 32)
+    private byte[] codeSecret; // HMAC key for ROTATING sessions, null otherwise
 
     @Column(name = "start_time", nullable = false)
     private LocalDateTime startTime = LocalDateTime.now();
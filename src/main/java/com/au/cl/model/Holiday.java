@@ -0,0 +1,23 @@
+package com.au.cl.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "holidays")
+public class Holiday {
+
+    @Id
+    @Column(name = "holiday_date")
+    private LocalDate date; // One holiday per day
+
+    @Column(nullable = false)
+    private String name;
+}
@@ -0,0 +1,52 @@
+package com.au.cl.model;
+
+import com.au.cl.model.Transaction.TransactionType;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Money received by a user per transaction type and day, maintained in the same transaction as every new
+ * transaction row. Written through LedgerBatchWriter's upsert, and repaired by LedgerRollupReconciler.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "ledger_daily_rollup")
+@IdClass(LedgerDailyRollup.LedgerDailyRollupId.class)
+public class LedgerDailyRollup {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId; // The receiver
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = "transaction_type")
+    private TransactionType transactionType;
+
+    @Id
+    @Column(name = "rollup_date")
+    private LocalDate rollupDate;
+
+    @Column(name = "payment_count", nullable = false)
+    private Long paymentCount;
+
+    @Column(nullable = false)
+    private Double amount;
+
+    // Composite Primary Key Class
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LedgerDailyRollupId implements Serializable {
+        private Long userId;
+        private TransactionType transactionType;
+        private LocalDate rollupDate;
+    }
+}
@@ -0,0 +1,58 @@
+package com.au.cl.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * One slice of a payroll run (the run's items with this chunk index) and its checkpoint.
+ * A chunk is marked COMPLETED in the same transaction that pays it, so after a crash every
+ * chunk is either fully paid and COMPLETED, or unpaid and still PENDING.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "payroll_run_chunks")
+@IdClass(PayrollRunChunk.PayrollRunChunkId.class)
+public class PayrollRunChunk {
+
+    @Id
+    @Column(name = "run_id")
+    private Long runId;
+
+    @Id
+    @Column(name = "chunk_index")
+    private Integer chunkIndex;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status = Status.PENDING;
+
+    @Column(name = "paid_count", nullable = false)
+    private Integer paidCount = 0;
+
+    @Column(nullable = false)
+    private Double amount = 0.0;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    public enum Status {
+        PENDING,
+        COMPLETED
+    }
+
+    // Composite Primary Key Class
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PayrollRunChunkId implements Serializable {
+        private Long runId;
+        private Integer chunkIndex;
+    }
+}
@@ -0,0 +1,52 @@
+package com.au.cl.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * One salary of a payroll run, frozen from the Avenger's schedule when the run starts.
+ * Chunks pay their items, so schedules edited, added or deactivated later do not change the run.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "payroll_run_items")
+@IdClass(PayrollRunItem.PayrollRunItemId.class)
+public class PayrollRunItem {
+
+    @Id
+    @Column(name = "run_id")
+    private Long runId;
+
+    @Id
+    @Column(name = "chunk_index")
+    private Integer chunkIndex;
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId; // Avenger paid
+
+    @Column(name = "sender_user_id", nullable = false)
+    private Long senderUserId; // Admin who set the salary; payments are made in their name
+
+    @Column(nullable = false)
+    private Double amount;
+
+    @Column(length = 500)
+    private String description;
+
+    // Composite Primary Key Class
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PayrollRunItemId implements Serializable {
+        private Long runId;
+        private Integer chunkIndex;
+        private Long userId;
+    }
+}
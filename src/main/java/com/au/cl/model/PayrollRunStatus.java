@@ -0,0 +1,9 @@
+package com.au.cl.model;
+
+/**
+ * State of a monthly payroll run.
+ */
+public enum PayrollRunStatus {
+    RUNNING,  // Some chunks are still pending (also after a crash, until the run is resumed)
+    COMPLETED // Every chunk has been paid
+}
@@ -0,0 +1,43 @@
+package com.au.cl.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "salary_schedules")
+public class SalarySchedule {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId; // One schedule per Avenger
+
+    @ToString.Exclude
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", insertable = false, updatable = false)
+    private User user;
+
+    @ToString.Exclude
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "created_by_user_id", nullable = false)
+    private User createdBy; // Admin who set the salary; payroll pays in their name
+
+    @Column(name = "monthly_amount", nullable = false)
+    private Double monthlyAmount;
+
+    @Column(length = 500)
+    private String description; // Optional, used as the description of the salary transactions
+
+    @Column(nullable = false)
+    private Boolean active = true;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt = LocalDateTime.now();
+}
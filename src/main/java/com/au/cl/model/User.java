@@ -46,6 +46,34 @@ public class User implements UserDetails { // Retained: Implements UserDetails
     @Column(name = "is_alive", nullable = false) // Added: Maps to 'is_alive' column in DB
     private Boolean alive = true; // Default to true (alive)
 
+    // Bumped whenever the password, role, alive status or username changes, so stale JWTs can be detected
+    @Column(name = "security_version", nullable = false)
+    private Long securityVersion = 0L;
+
+    // True when this instance was built from verified JWT claims (stateless mode) and only holds id, username and role
+    @Transient
+    private boolean loadedFromClaims = false;
+
+    /**
+     * Builds a lightweight, non-persistent principal from verified access token claims.
+     * Only the identity fields are populated; balance, email and password are not available.
+     * @param id The user id from the token.
+     * @param username The username (token subject).
+     * @param role The role from the token.
+     * @param securityVersion The security version the token was issued with.
+     * @return A User instance flagged as loaded from claims.
+     */
+    public static User fromClaims(Long id, String username, Role role, Long securityVersion) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+        user.setRole(role);
+        user.setAlive(true); // Disabled users never get a current security version, see SecurityVersionService
+        user.setSecurityVersion(securityVersion);
+        user.setLoadedFromClaims(true);
+        return user;
+    }
+
     // --- UserDetails Interface Implementations (RETAINED) ---
 
     /**
@@ -0,0 +1,29 @@
+package com.au.cl.repository;
+
+import com.au.cl.model.AttendanceMonthlyRollup;
+import com.au.cl.model.AttendanceMonthlyRollup.AttendanceMonthlyRollupId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AttendanceMonthlyRollupRepository extends JpaRepository<AttendanceMonthlyRollup, AttendanceMonthlyRollupId> {
+    // Rollup of one user for one month
+    Optional<AttendanceMonthlyRollup> findByUserIdAndPeriod(Long userId, Integer period);
+
+    // Rollups of one user for a range of months, e.g. a whole year
+    List<AttendanceMonthlyRollup> findByUserIdAndPeriodBetweenOrderByPeriod(Long userId, Integer fromPeriod, Integer toPeriod);
+
+    // Rebuild every rollup from the raw attendance records (used when the rollup table is empty)
+    @Modifying
+    @Query(value = "INSERT INTO attendance_monthly_rollups (user_id, period, present_days_mask, days_present, first_marked_at, last_marked_at) "
+            + "SELECT user_id, YEAR(marked_at) * 100 + MONTH(marked_at), BIT_OR(1 << (DAY(marked_at) - 1)), "
+            + "COUNT(DISTINCT DAY(marked_at)), MIN(marked_at), MAX(marked_at) "
+            + "FROM attendance_records GROUP BY user_id, YEAR(marked_at) * 100 + MONTH(marked_at)",
+            nativeQuery = true)
+    int rebuildFromRecords();
+}
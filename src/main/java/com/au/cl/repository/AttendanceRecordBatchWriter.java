@@ -0,0 +1,132 @@
+package com.au.cl.repository;
+
+import jakarta.transaction.Transactional;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Plain JDBC writer for attendance records, used where many records are inserted at once.
+ * JPA would issue one INSERT per entity; this sends a single JDBC batch per call.
+ * It also maintains attendance_monthly_rollups, which must change in the same transaction as the records.
+ */
+@Repository
+public class AttendanceRecordBatchWriter {
+
+    // IGNORE: a record that already exists (same session and user) is skipped instead of failing the batch
+    private static final String INSERT_SQL =
+            "INSERT IGNORE INTO attendance_records (session_id, user_id, marked_at) VALUES (?, ?, ?)";
+
+    // One "(session_id = ? AND user_id = ? AND marked_at = ?)" disjunct per record, each answered from the primary key
+    private static final String SELECT_WRITTEN_SQL =
+            "SELECT session_id, user_id FROM attendance_records WHERE ";
+
+    // Adds the record's day bit to the month's bitmask; days_present only grows when that bit was not set yet.
+    // The bit test is written with arithmetic (the new mask is a single power of two) so it also runs on H2.
+    // MySQL applies the assignments left to right, so days_present is computed from the old mask.
+    private static final String UPSERT_ROLLUP_SQL =
+            "INSERT INTO attendance_monthly_rollups (user_id, period, present_days_mask, days_present, first_marked_at, last_marked_at) "
+            + "VALUES (?, ?, ?, 1, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE "
+            + "days_present = days_present + CASE WHEN MOD(FLOOR(present_days_mask / VALUES(present_days_mask)), 2) = 0 THEN 1 ELSE 0 END, "
+            + "present_days_mask = present_days_mask + CASE WHEN MOD(FLOOR(present_days_mask / VALUES(present_days_mask)), 2) = 0 "
+            + "THEN VALUES(present_days_mask) ELSE 0 END, "
+            + "first_marked_at = LEAST(first_marked_at, VALUES(first_marked_at)), "
+            + "last_marked_at = GREATEST(last_marked_at, VALUES(last_marked_at))";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AttendanceRecordBatchWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Inserts attendance records in one JDBC batch and adds the inserted ones to the monthly rollups.
+     * When the driver reports SUCCESS_NO_INFO instead of per-row counts (MySQL Connector/J with
+     * rewriteBatchedStatements), the rows actually written are found with one extra SELECT.
+     * @param records The records to insert.
+     * @return 1 per record that was inserted, 0 per record that already existed.
+     */
+    @Transactional
+    public int[] insertIgnoringDuplicates(List<Row> records) {
+        if (records.isEmpty()) {
+            return new int[0];
+        }
+        int[] inserted = jdbcTemplate.batchUpdate(INSERT_SQL, records, records.size(), (ps, row) -> {
+            ps.setLong(1, row.sessionId());
+            ps.setLong(2, row.userId());
+            ps.setTimestamp(3, Timestamp.valueOf(row.markedAt()));
+        })[0];
+
+        Set<List<Long>> written = null;
+        List<Row> newRecords = new ArrayList<>(records.size());
+        for (int i = 0; i < inserted.length; i++) {
+            if (inserted[i] == Statement.SUCCESS_NO_INFO) {
+                if (written == null) {
+                    written = findWritten(records);
+                }
+                // A duplicate stored with the very same marked_at also matches; its day is already counted either way
+                inserted[i] = written.contains(List.of(records.get(i).sessionId(), records.get(i).userId())) ? 1 : 0;
+            }
+            if (inserted[i] != 0) {
+                newRecords.add(records.get(i));
+            }
+        }
+        upsertMonthlyRollups(newRecords);
+        return inserted;
+    }
+
+    /**
+     * Finds which of the records are stored with their marked_at.
+     * @param records The records just inserted.
+     * @return The [sessionId, userId] keys of the matching stored records.
+     */
+    private Set<List<Long>> findWritten(List<Row> records) {
+        StringBuilder sql = new StringBuilder(SELECT_WRITTEN_SQL);
+        Object[] args = new Object[records.size() * 3];
+        for (int i = 0; i < records.size(); i++) {
+            Row row = records.get(i);
+            sql.append(i == 0 ? "" : " OR ").append("(session_id = ? AND user_id = ? AND marked_at = ?)");
+            args[i * 3] = row.sessionId();
+            args[i * 3 + 1] = row.userId();
+            args[i * 3 + 2] = Timestamp.valueOf(row.markedAt());
+        }
+        Set<List<Long>> written = new HashSet<>();
+        jdbcTemplate.query(sql.toString(), rs -> {
+            written.add(List.of(rs.getLong(1), rs.getLong(2)));
+        }, args);
+        return written;
+    }
+
+    /**
+     * Adds newly inserted attendance records to the per-user monthly rollups.
+     * Must run in the transaction that inserts the records.
+     * @param newRecords Records that were just inserted (never duplicates).
+     */
+    public void upsertMonthlyRollups(List<Row> newRecords) {
+        if (newRecords.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(UPSERT_ROLLUP_SQL, newRecords, newRecords.size(), (ps, row) -> {
+            Timestamp markedAt = Timestamp.valueOf(row.markedAt());
+            ps.setLong(1, row.userId());
+            ps.setInt(2, row.markedAt().getYear() * 100 + row.markedAt().getMonthValue());
+            ps.setInt(3, 1 << (row.markedAt().getDayOfMonth() - 1));
+            ps.setTimestamp(4, markedAt);
+            ps.setTimestamp(5, markedAt);
+        });
+    }
+
+    /**
+     * One attendance record to insert.
+     */
+    public record Row(Long sessionId, Long userId, LocalDateTime markedAt) {
+    }
+}
@@ -1,12 +1,16 @@
 package com.au.cl.repository;
 
+import com.au.cl.dto.AttendanceRecordDTO;
 import com.au.cl.model.AttendanceRecord;
 import com.au.cl.model.AttendanceRecord.AttendanceRecordId;
 import com.au.cl.model.User; // Import User
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
-import java.time.LocalDate; // For date-based queries
+import java.time.LocalDateTime; // For date-based queries
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -17,9 +21,45 @@ public interface AttendanceRecordRepository extends JpaRepository<AttendanceReco
     // Find records for a specific user
     List<AttendanceRecord> findByUserOrderByMarkedAtDesc(User user); // Order by date for history
 
+    // All records as DTOs, newest first, with session code and username fetched in the same SELECT
+    @Query("SELECT new com.au.cl.dto.AttendanceRecordDTO(s.id, s.attendanceCode, u.username, r.markedAt, u.id) "
+            + "FROM AttendanceRecord r JOIN r.session s JOIN r.user u "
+            + "WHERE (:userId IS NULL OR u.id = :userId) "
+            + "ORDER BY r.markedAt DESC, s.id DESC, u.id DESC")
+    List<AttendanceRecordDTO> findRecordDtos(Long userId);
+
+    // One page of records as DTOs, newest first, after the (markedAt, sessionId, userId) cursor if one is given.
+    // Null filters are skipped; MySQL folds "NULL IS NULL" away, so the keyset condition can still use the indexes.
+    @Query("SELECT new com.au.cl.dto.AttendanceRecordDTO(s.id, s.attendanceCode, u.username, r.markedAt, u.id) "
+            + "FROM AttendanceRecord r JOIN r.session s JOIN r.user u "
+            + "WHERE (:sessionId IS NULL OR s.id = :sessionId) "
+            + "AND (:userId IS NULL OR u.id = :userId) "
+            + "AND (:from IS NULL OR r.markedAt >= :from) "
+            + "AND (:to IS NULL OR r.markedAt < :to) "
+            + "AND (:afterMarkedAt IS NULL OR r.markedAt < :afterMarkedAt "
+            + "OR (r.markedAt = :afterMarkedAt AND (s.id < :afterSessionId OR (s.id = :afterSessionId AND u.id < :afterUserId)))) "
+            + "ORDER BY r.markedAt DESC, s.id DESC, u.id DESC")
+    List<AttendanceRecordDTO> findRecordDtoPage(Long sessionId, Long userId, LocalDateTime from, LocalDateTime to,
+                                                LocalDateTime afterMarkedAt, Long afterSessionId, Long afterUserId, Limit limit);
+
+    // Ids of the users who marked a session (used to rebuild the in-memory session index)
+    @Query("SELECT r.user.id FROM AttendanceRecord r WHERE r.session.id = :sessionId")
+    List<Long> findUserIdsBySessionId(Long sessionId);
+
+    // Number of records per session, as [sessionId, count] rows
+    @Query("SELECT r.session.id, COUNT(r) FROM AttendanceRecord r WHERE r.session.id IN :sessionIds GROUP BY r.session.id")
+    List<Object[]> countBySessionIds(Collection<Long> sessionIds);
+
+    // Users among the given ids with their username, role and existing record for a session (null marked_at if none),
+    // as [userId, username, role, markedAt] rows; ids that match no user are absent
+    @Query("SELECT u.id, u.username, u.role, r.markedAt FROM User u "
+            + "LEFT JOIN AttendanceRecord r ON r.user = u AND r.session.id = :sessionId "
+            + "WHERE u.id IN :userIds")
+    List<Object[]> findMarkCandidates(Long sessionId, Collection<Long> userIds);
+
     // Check if a user has already marked attendance for a session
     boolean existsBySessionIdAndUserId(Long sessionId, Long userId);
 
-    // Count attendance records for a user within a specific month
-    long countByUserAndMarkedAtBetween(User user, LocalDate startOfMonth, LocalDate endOfMonth);
+    // Count attendance records for a user between two instants (inclusive)
+    long countByUserAndMarkedAtBetween(User user, LocalDateTime from, LocalDateTime to);
 }
@@ -2,8 +2,12 @@ package com.au.cl.repository;
 
 import com.au.cl.model.AttendanceSession;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,4 +18,15 @@ public interface AttendanceSessionRepository extends JpaRepository<AttendanceSes
 
     // Find session by code and active status
     Optional<AttendanceSession> findByAttendanceCodeAndIsActiveTrue(String attendanceCode);
+
+    // Claim up to :limit active sessions past their end time. Rows locked by another instance are skipped,
+    // so each expired session is closed by exactly one instance.
+    @Query(value = "SELECT id FROM attendance_sessions WHERE is_active = TRUE AND end_time < :now ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<Long> lockExpiredActiveSessionIds(LocalDateTime now, int limit);
+
+    // Flag sessions inactive without loading them
+    @Modifying
+    @Query("UPDATE AttendanceSession s SET s.isActive = false WHERE s.id IN :ids")
+    int deactivateAll(Collection<Long> ids);
 }
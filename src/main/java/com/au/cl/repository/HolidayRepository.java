@@ -0,0 +1,14 @@
+package com.au.cl.repository;
+
+import com.au.cl.model.Holiday;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface HolidayRepository extends JpaRepository<Holiday, LocalDate> {
+    // Find all holidays in date order
+    List<Holiday> findAllByOrderByDateAsc();
+}
@@ -0,0 +1,127 @@
+package com.au.cl.repository;
+
+import com.au.cl.event.PaymentsRecordedEvent;
+import com.au.cl.model.Transaction.TransactionType;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Plain JDBC writer for balance changes and transaction rows, used where many payments are made at once.
+ * Each call sends one JDBC batch instead of one statement (and one entity load) per payment.
+ * It also maintains ledger_daily_rollup, which must change in the same transaction as the transaction rows.
+ * Callers provide the transaction.
+ */
+@Repository
+public class LedgerBatchWriter {
+
+    private static final String INCREMENT_BALANCE_SQL =
+            "UPDATE users SET balance = COALESCE(balance, 0) + ? WHERE id = ?";
+
+    private static final String INSERT_TRANSACTION_SQL =
+            "INSERT INTO transactions (sender_user_id, receiver_user_id, amount, transaction_type, transaction_date, description) "
+            + "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String UPSERT_ROLLUP_SQL =
+            "INSERT INTO ledger_daily_rollup (user_id, transaction_type, rollup_date, payment_count, amount) VALUES (?, ?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE payment_count = payment_count + VALUES(payment_count), amount = amount + VALUES(amount)";
+
+    // Receiver first, so rollup rows are locked in ascending user id order like the balances
+    private static final Comparator<RollupKey> ROLLUP_ORDER = Comparator.comparing(RollupKey::userId)
+            .thenComparing(RollupKey::type)
+            .thenComparing(RollupKey::date);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public LedgerBatchWriter(JdbcTemplate jdbcTemplate, ApplicationEventPublisher eventPublisher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Adds amounts to balances in one JDBC batch. Rows are updated in ascending user id order,
+     * the same lock order as every other balance change, so concurrent batches cannot deadlock.
+     * @param amountsByUserId The amount to add per user id.
+     */
+    public void incrementBalances(SortedMap<Long, Double> amountsByUserId) {
+        if (amountsByUserId.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<Long, Double>> entries = List.copyOf(amountsByUserId.entrySet());
+        jdbcTemplate.batchUpdate(INCREMENT_BALANCE_SQL, entries, entries.size(), (ps, entry) -> {
+            ps.setDouble(1, entry.getValue());
+            ps.setLong(2, entry.getKey());
+        });
+    }
+
+    /**
+     * Inserts transaction rows in one JDBC batch and adds them to the daily rollups.
+     * @param transactions The transactions to insert.
+     */
+    public void insertTransactions(List<Row> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_TRANSACTION_SQL, transactions, transactions.size(), (ps, row) -> {
+            ps.setLong(1, row.senderId());
+            ps.setLong(2, row.receiverId());
+            ps.setDouble(3, row.amount());
+            ps.setString(4, row.type().name());
+            ps.setTimestamp(5, Timestamp.valueOf(row.transactionDate()));
+            ps.setString(6, row.description());
+        });
+        upsertDailyRollups(transactions);
+    }
+
+    /**
+     * Adds newly inserted transactions to the per-receiver daily rollups, one row per receiver, type and day,
+     * and publishes a PaymentsRecordedEvent with their totals per type and day.
+     * Must run in the transaction that inserts the transactions, after the receivers' balances were updated.
+     * @param transactions Transactions that were just inserted.
+     */
+    public void upsertDailyRollups(List<Row> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        SortedMap<RollupKey, double[]> totals = new TreeMap<>(ROLLUP_ORDER); // {count, amount}
+        for (Row row : transactions) {
+            double[] total = totals.computeIfAbsent(new RollupKey(row.receiverId(), row.type(), row.transactionDate().toLocalDate()),
+                    key -> new double[2]);
+            total[0]++;
+            total[1] += row.amount();
+        }
+        List<Map.Entry<RollupKey, double[]>> entries = List.copyOf(totals.entrySet());
+        jdbcTemplate.batchUpdate(UPSERT_ROLLUP_SQL, entries, entries.size(), (ps, entry) -> {
+            ps.setLong(1, entry.getKey().userId());
+            ps.setString(2, entry.getKey().type().name());
+            ps.setDate(3, Date.valueOf(entry.getKey().date()));
+            ps.setLong(4, (long) entry.getValue()[0]);
+            ps.setDouble(5, entry.getValue()[1]);
+        });
+
+        eventPublisher.publishEvent(new PaymentsRecordedEvent(entries.stream()
+                .map(entry -> new PaymentsRecordedEvent.DailyTotal(entry.getKey().type(), entry.getKey().date(), entry.getValue()[1]))
+                .toList()));
+    }
+
+    /**
+     * One transaction to insert.
+     */
+    public record Row(Long senderId, Long receiverId, double amount, TransactionType type, LocalDateTime transactionDate,
+                      String description) {
+    }
+
+    private record RollupKey(Long userId, TransactionType type, LocalDate date) {
+    }
+}
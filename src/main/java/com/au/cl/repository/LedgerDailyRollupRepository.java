@@ -0,0 +1,45 @@
+package com.au.cl.repository;
+
+import com.au.cl.model.LedgerDailyRollup;
+import com.au.cl.model.LedgerDailyRollup.LedgerDailyRollupId;
+import com.au.cl.model.Transaction.TransactionType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface LedgerDailyRollupRepository extends JpaRepository<LedgerDailyRollup, LedgerDailyRollupId> {
+    // Total amount of a transaction type over a range of days (for dashboard stats)
+    @Query("SELECT COALESCE(SUM(r.amount), 0) FROM LedgerDailyRollup r "
+            + "WHERE r.transactionType = :type AND r.rollupDate BETWEEN :fromDate AND :toDate")
+    double sumAmountByTypeBetween(TransactionType type, LocalDate fromDate, LocalDate toDate);
+
+    // Total amount received by a user over a range of days (monthly earnings)
+    @Query("SELECT COALESCE(SUM(r.amount), 0) FROM LedgerDailyRollup r "
+            + "WHERE r.userId = :userId AND r.rollupDate BETWEEN :fromDate AND :toDate")
+    double sumAmountReceivedBetween(Long userId, LocalDate fromDate, LocalDate toDate);
+
+    // Earnings of a user per month over a range of days as [month, count, amount] rows; months without payments are absent
+    @Query("SELECT MONTH(r.rollupDate), SUM(r.paymentCount), SUM(r.amount) FROM LedgerDailyRollup r "
+            + "WHERE r.userId = :userId AND r.rollupDate BETWEEN :fromDate AND :toDate "
+            + "GROUP BY MONTH(r.rollupDate)")
+    List<Object[]> sumAmountReceivedByMonth(Long userId, LocalDate fromDate, LocalDate toDate);
+
+    // Total amount per transaction type and day, as [transactionType, date, amount] rows (loads PaymentTotalsIndex)
+    @Query("SELECT r.transactionType, r.rollupDate, SUM(r.amount) FROM LedgerDailyRollup r GROUP BY r.transactionType, r.rollupDate")
+    List<Object[]> sumAmountByTypeAndDate();
+
+    // Stored rollups of the receivers in an id range (reconciliation)
+    List<LedgerDailyRollup> findByUserIdBetween(Long firstUserId, Long lastUserId);
+
+    // Rollups recomputed from the raw transactions of the receivers in an id range,
+    // as [userId, transactionType, date, count, amount] rows (reconciliation)
+    @Query(value = "SELECT receiver_user_id, transaction_type, DATE(transaction_date), COUNT(*), SUM(amount) FROM transactions "
+            + "WHERE receiver_user_id BETWEEN :firstUserId AND :lastUserId "
+            + "GROUP BY receiver_user_id, transaction_type, DATE(transaction_date)",
+            nativeQuery = true)
+    List<Object[]> aggregateTransactions(Long firstUserId, Long lastUserId);
+}
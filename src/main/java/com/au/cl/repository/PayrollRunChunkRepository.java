@@ -0,0 +1,29 @@
+package com.au.cl.repository;
+
+import com.au.cl.model.PayrollRunChunk;
+import com.au.cl.model.PayrollRunChunk.PayrollRunChunkId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface PayrollRunChunkRepository extends JpaRepository<PayrollRunChunk, PayrollRunChunkId> {
+    List<PayrollRunChunk> findByRunIdAndStatusOrderByChunkIndex(Long runId, PayrollRunChunk.Status status);
+
+    // Checkpoint a chunk as paid. Returns 0 if it was already completed (e.g. by another instance),
+    // in which case the caller must not pay it again. Locks the chunk row until the paying transaction ends.
+    @Modifying
+    @Query("UPDATE PayrollRunChunk c SET c.status = com.au.cl.model.PayrollRunChunk.Status.COMPLETED, "
+            + "c.paidCount = :paidCount, c.amount = :amount, c.completedAt = :completedAt "
+            + "WHERE c.runId = :runId AND c.chunkIndex = :chunkIndex AND c.status = com.au.cl.model.PayrollRunChunk.Status.PENDING")
+    int markCompleted(Long runId, Integer chunkIndex, Integer paidCount, Double amount, LocalDateTime completedAt);
+
+    // Progress of a run as [completedChunks, paidCount, amount]
+    @Query("SELECT COUNT(c), COALESCE(SUM(c.paidCount), 0), COALESCE(SUM(c.amount), 0) FROM PayrollRunChunk c "
+            + "WHERE c.runId = :runId AND c.status = com.au.cl.model.PayrollRunChunk.Status.COMPLETED")
+    List<Object[]> sumCompleted(Long runId);
+}
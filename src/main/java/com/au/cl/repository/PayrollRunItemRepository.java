@@ -0,0 +1,28 @@
+package com.au.cl.repository;
+
+import com.au.cl.model.PayrollRunItem;
+import com.au.cl.model.PayrollRunItem.PayrollRunItemId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface PayrollRunItemRepository extends JpaRepository<PayrollRunItem, PayrollRunItemId> {
+    // Freeze every active schedule into a run, numbering chunks of chunkSize Avengers by ascending id.
+    // Returns the number of items, from which the caller derives the chunk count.
+    @Modifying
+    @Query(value = "INSERT INTO payroll_run_items (run_id, chunk_index, user_id, sender_user_id, amount, description) "
+            + "SELECT :runId, FLOOR((ROW_NUMBER() OVER (ORDER BY user_id) - 1) / :chunkSize), "
+            + "user_id, created_by_user_id, monthly_amount, description "
+            + "FROM salary_schedules WHERE active = TRUE",
+            nativeQuery = true)
+    int freezeActiveSchedules(Long runId, int chunkSize);
+
+    // Items of one chunk as [userId, senderUserId, amount, description] rows
+    @Query("SELECT i.userId, i.senderUserId, i.amount, i.description FROM PayrollRunItem i "
+            + "WHERE i.runId = :runId AND i.chunkIndex = :chunkIndex ORDER BY i.userId")
+    List<Object[]> findChunk(Long runId, Integer chunkIndex);
+}
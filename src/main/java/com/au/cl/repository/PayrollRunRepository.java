@@ -0,0 +1,27 @@
+package com.au.cl.repository;
+
+import com.au.cl.model.PayrollRun;
+import com.au.cl.model.PayrollRunStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface PayrollRunRepository extends JpaRepository<PayrollRun, Long> {
+    Optional<PayrollRun> findByPeriod(Integer period);
+
+    List<PayrollRun> findByStatus(PayrollRunStatus status);
+
+    List<PayrollRun> findAllByOrderByPeriodDesc();
+
+    // Mark a run completed once, when its last chunk is done
+    @Modifying
+    @Query("UPDATE PayrollRun r SET r.status = com.au.cl.model.PayrollRunStatus.COMPLETED, r.finishedAt = :finishedAt "
+            + "WHERE r.id = :id AND r.status = com.au.cl.model.PayrollRunStatus.RUNNING")
+    int markCompleted(Long id, LocalDateTime finishedAt);
+}
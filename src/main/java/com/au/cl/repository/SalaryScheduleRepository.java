@@ -0,0 +1,15 @@
+package com.au.cl.repository;
+
+import com.au.cl.model.SalarySchedule;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface SalaryScheduleRepository extends JpaRepository<SalarySchedule, Long> {
+    // All schedules with their Avenger, for the admin list
+    @Query("SELECT s FROM SalarySchedule s JOIN FETCH s.user ORDER BY s.userId")
+    List<SalarySchedule> findAllWithUser();
+}
@@ -1,9 +1,11 @@
 package com.au.cl.repository;
 
+import com.au.cl.dto.TransactionDTO;
 import com.au.cl.model.Transaction;
 import com.au.cl.model.Transaction.TransactionType;
 import com.au.cl.model.User; // Import User
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -17,9 +19,6 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
     // Find all transactions ordered by transaction date descending (for admin history)
     List<Transaction> findAllByOrderByTransactionDateDesc();
 
-    // Find transactions by transaction type within a date range
-    List<Transaction> findByTransactionTypeAndTransactionDateBetween(TransactionType type, LocalDateTime startDate, LocalDateTime endDate);
-
     // Count total payments for a given period and type (for dashboard stats)
     long countByTransactionTypeAndTransactionDateBetween(TransactionType type, LocalDateTime startDate, LocalDateTime endDate);
 
@@ -29,7 +28,22 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
     // New: Find the last transaction for a user (either sender or receiver)
     List<Transaction> findTop1BySenderOrReceiverOrderByTransactionDateDesc(User sender, User receiver);
 
-    // New: Sum of amounts where the user is the receiver within a date range
-    // This is for calculating monthly earnings
-    List<Transaction> findByReceiverAndTransactionDateBetween(User receiver, LocalDateTime startDate, LocalDateTime endDate);
+    // One page of a user's history as DTOs, newest first, after the (transactionDate, id) cursor if one is given.
+    // Each branch of the UNION walks one index ((sender|receiver)_user_id, transaction_date, id) and stops after
+    // :pageSize rows, so a page costs the same however long the history is. UNION also drops a payment to oneself.
+    @Query("SELECT new com.au.cl.dto.TransactionDTO(h.id, s.username, r.username, h.amount, h.transactionType, h.transactionDate, h.description) "
+            + "FROM ("
+            + "(SELECT t.id AS id, t.sender.id AS senderId, t.receiver.id AS receiverId, t.amount AS amount, "
+            + "t.transactionType AS transactionType, t.transactionDate AS transactionDate, t.description AS description "
+            + "FROM Transaction t WHERE t.sender.id = :userId "
+            + "AND (:afterDate IS NULL OR t.transactionDate < :afterDate OR (t.transactionDate = :afterDate AND t.id < :afterId)) "
+            + "ORDER BY t.transactionDate DESC, t.id DESC LIMIT :pageSize) "
+            + "UNION "
+            + "(SELECT t.id, t.sender.id, t.receiver.id, t.amount, t.transactionType, t.transactionDate, t.description "
+            + "FROM Transaction t WHERE t.receiver.id = :userId "
+            + "AND (:afterDate IS NULL OR t.transactionDate < :afterDate OR (t.transactionDate = :afterDate AND t.id < :afterId)) "
+            + "ORDER BY t.transactionDate DESC, t.id DESC LIMIT :pageSize)"
+            + ") h JOIN User s ON s.id = h.senderId JOIN User r ON r.id = h.receiverId "
+            + "ORDER BY h.transactionDate DESC, h.id DESC LIMIT :pageSize")
+    List<TransactionDTO> findHistoryPage(Long userId, LocalDateTime afterDate, Long afterId, int pageSize);
 }
@@ -4,18 +4,45 @@ package com.au.cl.repository;
 import com.au.cl.model.Role;
 import com.au.cl.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
+    List<User> findByUsernameIn(Collection<String> usernames); // Resolve many recipients in one query
     Boolean existsByUsername(String username);
     Boolean existsByEmail(String email); // Consider adding this for registration validation
 
     // New methods for dashboard functionality:
     List<User> findByRole(Role role); // To get all Avengers
     long countByRole(Role role); // To count total Avengers for dashboard stats
+
+    // Replace only the password hash (used to upgrade hashes to the current BCrypt cost on login)
+    @Modifying
+    @Query("UPDATE User u SET u.password = :password WHERE u.id = :id")
+    int updatePassword(Long id, String password);
+
+    // Add to a balance in one atomic UPDATE, so concurrent credits to the same user are never lost
+    @Modifying
+    @Query("UPDATE User u SET u.balance = COALESCE(u.balance, 0) + :amount WHERE u.id = :id")
+    int incrementBalance(Long id, Double amount);
+
+    // Take from a balance only if it covers the amount; returns 0 (and changes nothing) if it does not
+    @Modifying
+    @Query("UPDATE User u SET u.balance = u.balance - :amount WHERE u.id = :id AND u.balance >= :amount")
+    int debitIfSufficient(Long id, Double amount);
+
+    // All user ids in ascending order (to split the ledger reconciliation into partitions)
+    @Query("SELECT u.id FROM User u ORDER BY u.id")
+    List<Long> findAllIds();
+
+    // Lock the users in an id range, in ascending id order; balance changes to them wait until the transaction ends
+    @Query(value = "SELECT id FROM users WHERE id BETWEEN :firstId AND :lastId ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<Long> lockIdsBetween(Long firstId, Long lastId);
 }
@@ -0,0 +1,146 @@
+package com.au.cl.service;
+
+import com.au.cl.dto.AttendanceCalendarDTO;
+import com.au.cl.dto.AttendanceStatsDTO;
+import com.au.cl.repository.AttendanceMonthlyRollupRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Keeps each Avenger's attendance as one 32-bit day-bitmap per month (bit day - 1 set when present).
+ * A year of bitmaps is loaded from attendance_monthly_rollups.present_days_mask on first use, kept in memory,
+ * and updated in place whenever a new attendance record commits. Present days, absences and streaks are then
+ * computed with popcounts and masks against the WorkCalendar's workday bitmaps instead of scanning records.
+ * Only records committed on this instance are applied in place, so a loaded year is dropped
+ * attendance.calendar-cache.ttl-seconds after it was loaded and reloaded with records from other instances.
+ */
+@Service
+public class AttendanceCalendarService {
+
+    private final AttendanceMonthlyRollupRepository rollupRepository;
+    private final WorkCalendar workCalendar;
+    private final Cache<CalendarKey, AtomicIntegerArray> calendars;
+
+    public AttendanceCalendarService(AttendanceMonthlyRollupRepository rollupRepository, WorkCalendar workCalendar,
+                                     @Value("${attendance.calendar-cache.max-size:10000}") long maxSize,
+                                     @Value("${attendance.calendar-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.rollupRepository = rollupRepository;
+        this.workCalendar = workCalendar;
+        this.calendars = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                // Counted from the load: recordPresence's in-place updates must not keep an entry alive forever
+                .expireAfter(Expiry.creating((CalendarKey key, AtomicIntegerArray masks) -> Duration.ofSeconds(ttlSeconds)))
+                .build();
+    }
+
+    /**
+     * Returns the presence bitmaps of an Avenger for a year.
+     * @param userId The Avenger's id.
+     * @param year The year.
+     * @return 12 bitmaps, one per month (a copy).
+     */
+    public int[] getPresenceMasks(Long userId, int year) {
+        AtomicIntegerArray masks = calendars.get(new CalendarKey(userId, year), key -> load(userId, year));
+        int[] copy = new int[12];
+        for (int i = 0; i < 12; i++) {
+            copy[i] = masks.get(i);
+        }
+        return copy;
+    }
+
+    /**
+     * Sets a day in an Avenger's calendar, if that year is loaded. Call after the attendance record committed.
+     * @param userId The Avenger's id.
+     * @param day The day of the record.
+     */
+    public void recordPresence(Long userId, LocalDate day) {
+        // computeIfPresent waits for a load in progress, so a load that missed the new record still gets the bit
+        calendars.asMap().computeIfPresent(new CalendarKey(userId, day.getYear()), (key, masks) -> {
+            masks.getAndUpdate(day.getMonthValue() - 1, mask -> mask | 1 << (day.getDayOfMonth() - 1));
+            return masks;
+        });
+    }
+
+    /**
+     * Builds the calendar of an Avenger for a year, with totals and streaks up to today.
+     * @param userId The Avenger's id.
+     * @param year The year.
+     * @return The AttendanceCalendarDTO.
+     */
+    public AttendanceCalendarDTO getCalendar(Long userId, int year) {
+        int[] present = getPresenceMasks(userId, year);
+        int[] work = new int[12];
+        LocalDate today = LocalDate.now();
+
+        long daysPresent = 0;
+        long workdaysSoFar = 0;
+        long workdaysPresent = 0;
+        int run = 0; // Attended workdays since the last missed one
+        int longest = 0;
+        for (int month = 1; month <= 12; month++) {
+            YearMonth yearMonth = YearMonth.of(year, month);
+            work[month - 1] = workCalendar.workdayMask(yearMonth);
+            int elapsed = elapsedDaysMask(yearMonth, today); // Days up to and including today
+            if (elapsed == 0) {
+                continue;
+            }
+            int attended = present[month - 1] & work[month - 1] & elapsed;
+            int countable = work[month - 1] & elapsed;
+            daysPresent += Integer.bitCount(present[month - 1] & elapsed);
+            workdaysSoFar += Integer.bitCount(countable);
+            workdaysPresent += Integer.bitCount(attended);
+
+            // Today is not missed yet, even if it has no record so far
+            int missed = countable & ~attended;
+            if (yearMonth.equals(YearMonth.from(today))) {
+                missed &= ~(1 << (today.getDayOfMonth() - 1));
+            }
+            // Each missed workday closes the run of attended workdays below it
+            int from = 0;
+            while (missed != 0) {
+                int lowest = Integer.lowestOneBit(missed);
+                run += Integer.bitCount(attended & (lowest - 1) & ~((1 << from) - 1));
+                longest = Math.max(longest, run);
+                run = 0;
+                from = Integer.numberOfTrailingZeros(lowest) + 1;
+                missed &= missed - 1;
+            }
+            run += Integer.bitCount(attended & ~((1 << from) - 1));
+            longest = Math.max(longest, run);
+        }
+
+        double attendanceRate = workdaysSoFar > 0 ? (double) workdaysPresent / workdaysSoFar * 100 : 0.0;
+        AttendanceStatsDTO stats = new AttendanceStatsDTO(daysPresent, workdaysSoFar - workdaysPresent, attendanceRate);
+        return new AttendanceCalendarDTO(year, present, work, stats, run, longest);
+    }
+
+    /**
+     * Bitmap of the days of a month up to and including today (all days for past months, none for future ones).
+     */
+    static int elapsedDaysMask(YearMonth yearMonth, LocalDate today) {
+        YearMonth currentMonth = YearMonth.from(today);
+        if (yearMonth.isAfter(currentMonth)) {
+            return 0;
+        }
+        int days = yearMonth.equals(currentMonth) ? today.getDayOfMonth() : yearMonth.lengthOfMonth();
+        return (int) ((1L << days) - 1);
+    }
+
+    private AtomicIntegerArray load(Long userId, int year) {
+        AtomicIntegerArray masks = new AtomicIntegerArray(12);
+        rollupRepository.findByUserIdAndPeriodBetweenOrderByPeriod(userId, year * 100 + 1, year * 100 + 12)
+                .forEach(rollup -> masks.set(rollup.getPeriod() % 100 - 1, rollup.getPresentDaysMask()));
+        return masks;
+    }
+
+    private record CalendarKey(Long userId, int year) {
+    }
+}
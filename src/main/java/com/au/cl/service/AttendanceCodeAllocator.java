@@ -0,0 +1,101 @@
+package com.au.cl.service;
+
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Hands out 6-digit attendance codes without probing the database.
+ * Codes are taken in the order of a random permutation of the whole 000000-999999 space, skipping codes
+ * that are still held by an active session, so consecutive codes are unrelated and allocation stays O(1)
+ * as long as only a small part of the space is in use. A code becomes available again once its session
+ * is released.
+ */
+@Component
+public class AttendanceCodeAllocator {
+
+    private static final int CODE_SPACE = 1_000_000;
+
+    private final int[] permutation = new int[CODE_SPACE];
+    private final BitSet inUse = new BitSet(CODE_SPACE);
+    private int cursor;
+    private int inUseCount;
+
+    public AttendanceCodeAllocator() {
+        // Fisher-Yates shuffle of 0..999999
+        Random random = new SecureRandom();
+        for (int i = 0; i < CODE_SPACE; i++) {
+            permutation[i] = i;
+        }
+        for (int i = CODE_SPACE - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = permutation[i];
+            permutation[i] = permutation[j];
+            permutation[j] = swap;
+        }
+    }
+
+    /**
+     * Allocates a code that no active session holds.
+     * @return The 6-digit code.
+     * @throws IllegalStateException if every code is in use.
+     */
+    public synchronized String allocate() {
+        if (inUseCount == CODE_SPACE) {
+            throw new IllegalStateException("All attendance codes are in use.");
+        }
+        while (inUse.get(permutation[cursor])) {
+            cursor = (cursor + 1) % CODE_SPACE;
+        }
+        int code = permutation[cursor];
+        cursor = (cursor + 1) % CODE_SPACE;
+        inUse.set(code);
+        inUseCount++;
+        return format(code);
+    }
+
+    /**
+     * Marks a code as held, e.g. by an active session found at startup. Does nothing if it is already held.
+     * @param code The attendance code.
+     */
+    public synchronized void reserve(String code) {
+        int value = parse(code);
+        if (value >= 0 && !inUse.get(value)) {
+            inUse.set(value);
+            inUseCount++;
+        }
+    }
+
+    /**
+     * Returns a code to the pool once its session has ended (or was never committed).
+     * @param code The attendance code.
+     */
+    public synchronized void release(String code) {
+        int value = parse(code);
+        if (value >= 0 && inUse.get(value)) {
+            inUse.clear(value);
+            inUseCount--;
+        }
+    }
+
+    public synchronized int getInUseCount() {
+        return inUseCount;
+    }
+
+    private static String format(int code) {
+        return String.format("%06d", code);
+    }
+
+    private static int parse(String code) {
+        if (code == null || code.length() != 6) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(code);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
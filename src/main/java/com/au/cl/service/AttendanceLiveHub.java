@@ -0,0 +1,259 @@
+package com.au.cl.service;
+
+import com.au.cl.event.AttendanceSessionClosedEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process publish/subscribe hub behind the live attendance monitor.
+ * Admins subscribe to an active session and get Server-Sent Events: "status" on connect and every
+ * attendance.live.heartbeat-ms (running count and seconds remaining), "mark" for each accepted mark,
+ * and "closed" when the session ends, after which the stream is completed and the session's channel dropped.
+ *
+ * Connections are async-servlet SseEmitters, so an open stream holds no thread. Each subscriber has its own
+ * queue of up to attendance.live.subscriber-queue events, drained on a pool of attendance.live.sender-threads
+ * threads a few events at a time, so a slow client never delays markAttendance or the other streams. A client
+ * whose queue overflows, e.g. because a write to its socket is blocked, is dropped; the others keep every event.
+ * A blocked write still holds its sender thread until the servlet container times the write out.
+ */
+@Component
+public class AttendanceLiveHub {
+
+    private static final Logger logger = LoggerFactory.getLogger(AttendanceLiveHub.class);
+    private static final long TIMEOUT_GRACE_MILLIS = 30_000; // Keep streams open a little past the end time for the "closed" event
+    private static final int EVENTS_PER_TURN = 16; // Then the sender thread moves on to other subscribers
+
+    private final AttendanceSessionIndex sessionIndex;
+    private final int subscriberQueueSize;
+    private final Map<Long, Channel> channels = new ConcurrentHashMap<>();
+    private final ExecutorService senders;
+
+    public AttendanceLiveHub(AttendanceSessionIndex sessionIndex,
+                             @Value("${attendance.live.sender-threads:4}") int senderThreads,
+                             @Value("${attendance.live.subscriber-queue:100}") int subscriberQueueSize) {
+        this.sessionIndex = sessionIndex;
+        this.subscriberQueueSize = subscriberQueueSize;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "attendance-live-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Opens a live stream for an active session.
+     * @param sessionId The session id.
+     * @return The SseEmitter to return from the controller.
+     * @throws IllegalArgumentException if no active session has this id.
+     */
+    public SseEmitter subscribe(Long sessionId) {
+        AttendanceSessionIndex.ActiveSession session = sessionIndex.findById(sessionId);
+        LocalDateTime now = LocalDateTime.now();
+        if (session == null || session.isExpiredAt(now)) {
+            throw new IllegalArgumentException("No active attendance session with id " + sessionId + ".");
+        }
+
+        SseEmitter emitter = new SseEmitter(Duration.between(now, session.getEndTime()).toMillis() + TIMEOUT_GRACE_MILLIS);
+        Channel channel = channels.computeIfAbsent(sessionId, id -> new Channel(session));
+        Subscriber subscriber = new Subscriber(channel, emitter, subscriberQueueSize);
+        channel.subscribers().add(subscriber);
+        emitter.onCompletion(() -> channel.subscribers().remove(subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> channel.subscribers().remove(subscriber));
+
+        enqueue(subscriber, new Event("status", status(session, now)));
+        return emitter;
+    }
+
+    /**
+     * Streams an accepted mark to the session's subscribers, if it has any.
+     * @param session The marked session.
+     * @param username The avenger who marked.
+     * @param markedAt When the mark was accepted.
+     */
+    public void publishMark(AttendanceSessionIndex.ActiveSession session, String username, LocalDateTime markedAt) {
+        Channel channel = channels.get(session.getSessionId());
+        if (channel == null) {
+            return;
+        }
+        Map<String, Object> mark = status(session, markedAt);
+        mark.put("username", username);
+        mark.put("markedAt", markedAt);
+        broadcast(channel, new Event("mark", mark));
+    }
+
+    /**
+     * Sends every open stream the current count and time remaining, which also keeps idle connections open,
+     * and closes streams of sessions that have ended.
+     */
+    @Scheduled(fixedDelayString = "${attendance.live.heartbeat-ms:5000}")
+    public void heartbeat() {
+        LocalDateTime now = LocalDateTime.now();
+        channels.forEach((sessionId, channel) -> {
+            if (channel.session().isExpiredAt(now)) {
+                close(sessionId, closed(sessionId, channel.session().getMarkedCount()));
+            } else {
+                broadcast(channel, new Event("status", status(channel.session(), now)));
+            }
+        });
+    }
+
+    /**
+     * Sends the final count and completes the streams of a closed session.
+     * @param event The session closed event.
+     */
+    @EventListener
+    public void onSessionClosed(AttendanceSessionClosedEvent event) {
+        close(event.getSessionId(), closed(event.getSessionId(), event.getAttendeeCount()));
+    }
+
+    public int getSubscriberCount() {
+        return channels.values().stream().mapToInt(channel -> channel.subscribers().size()).sum();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        senders.shutdownNow();
+        channels.values().forEach(channel -> channel.subscribers().forEach(subscriber -> subscriber.emitter.complete()));
+        channels.clear();
+    }
+
+    private void close(Long sessionId, Map<String, Object> closed) {
+        Channel channel = channels.remove(sessionId);
+        if (channel == null) {
+            return; // Already closed by the heartbeat or the closed event
+        }
+        broadcast(channel, new Event("closed", closed));
+        broadcast(channel, Event.COMPLETE);
+        logger.debug("Live attendance streams of session {} closed", sessionId);
+    }
+
+    private void broadcast(Channel channel, Event event) {
+        for (Subscriber subscriber : channel.subscribers()) {
+            enqueue(subscriber, event);
+        }
+    }
+
+    /**
+     * Queues an event for one subscriber and makes sure a sender thread is draining its queue.
+     */
+    private void enqueue(Subscriber subscriber, Event event) {
+        if (!subscriber.queue.offer(event)) {
+            // Not keeping up, most likely blocked on its socket: drop this client only
+            drop(subscriber);
+            subscriber.emitter.complete();
+            logger.debug("Live attendance subscriber of session {} dropped with {} events pending",
+                    subscriber.channel.session().getSessionId(), subscriberQueueSize);
+            return;
+        }
+        if (subscriber.draining.compareAndSet(false, true)) {
+            schedule(subscriber);
+        }
+    }
+
+    private void schedule(Subscriber subscriber) {
+        try {
+            senders.execute(() -> drain(subscriber));
+        } catch (RejectedExecutionException e) {
+            subscriber.draining.set(false); // Shutting down
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        for (int sent = 0; sent < EVENTS_PER_TURN; sent++) {
+            Event event = subscriber.queue.poll();
+            if (event == null) {
+                subscriber.draining.set(false);
+                // An event queued between the poll and clearing the flag saw the flag still set and left it to us
+                if (subscriber.queue.isEmpty() || !subscriber.draining.compareAndSet(false, true)) {
+                    return;
+                }
+                continue;
+            }
+            send(subscriber, event);
+        }
+        schedule(subscriber); // Let other subscribers' events go first
+    }
+
+    private void send(Subscriber subscriber, Event event) {
+        try {
+            if (event == Event.COMPLETE) {
+                subscriber.emitter.complete();
+            } else {
+                subscriber.emitter.send(SseEmitter.event().name(event.name()).data(event.data()));
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Client went away (or the emitter already completed)
+            drop(subscriber);
+        }
+    }
+
+    private static void drop(Subscriber subscriber) {
+        subscriber.channel.subscribers().remove(subscriber);
+        subscriber.queue.clear();
+    }
+
+    private static Map<String, Object> status(AttendanceSessionIndex.ActiveSession session, LocalDateTime now) {
+        Map<String, Object> status = new HashMap<>();
+        status.put("sessionId", session.getSessionId());
+        status.put("count", session.getMarkedCount());
+        status.put("secondsRemaining", Math.max(0, Duration.between(now, session.getEndTime()).toSeconds()));
+        return status;
+    }
+
+    private static Map<String, Object> closed(Long sessionId, long attendeeCount) {
+        Map<String, Object> closed = new HashMap<>();
+        closed.put("sessionId", sessionId);
+        closed.put("count", attendeeCount);
+        closed.put("secondsRemaining", 0);
+        return closed;
+    }
+
+    private record Channel(AttendanceSessionIndex.ActiveSession session, Set<Subscriber> subscribers) {
+        private Channel(AttendanceSessionIndex.ActiveSession session) {
+            this(session, ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    /**
+     * One open stream: its pending events, and whether a sender thread is draining them.
+     */
+    private static final class Subscriber {
+        private final Channel channel;
+        private final SseEmitter emitter;
+        private final BlockingQueue<Event> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private Subscriber(Channel channel, SseEmitter emitter, int queueSize) {
+            this.channel = channel;
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+        }
+    }
+
+    private record Event(String name, Map<String, Object> data) {
+        private static final Event COMPLETE = new Event(null, null); // Completes the stream after the queued events
+    }
+}
@@ -1,80 +1,235 @@
 package com.au.cl.service;
 
+import com.au.cl.dto.AttendanceCalendarDTO;
 import com.au.cl.dto.AttendanceRecordDTO;
 import com.au.cl.dto.AttendanceSessionResponse;
 import com.au.cl.dto.AttendanceStatsDTO;
+import com.au.cl.dto.BulkAttendanceResult;
+import com.au.cl.dto.CursorPage;
+import com.au.cl.dto.MonthlyAttendanceStatsDTO;
+import com.au.cl.event.WorkCalendarChangedEvent;
+import com.au.cl.model.AttendanceCodeMode;
+import com.au.cl.model.AttendanceMonthlyRollup;
 import com.au.cl.model.AttendanceRecord;
 import com.au.cl.model.AttendanceSession;
+import com.au.cl.model.Role;
 import com.au.cl.model.User;
+import com.au.cl.repository.AttendanceMonthlyRollupRepository;
+import com.au.cl.repository.AttendanceRecordBatchWriter;
 import com.au.cl.repository.AttendanceRecordRepository;
 import com.au.cl.repository.AttendanceSessionRepository;
 import com.au.cl.repository.UserRepository;
+import com.au.cl.util.RotatingCodeGenerator;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.time.DayOfWeek;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.YearMonth;
-import java.time.temporal.TemporalAdjusters;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Random;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
 
 @Service
 public class AttendanceService {
 
     private static final Logger logger = LoggerFactory.getLogger(AttendanceService.class);
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int MAX_CODE_ATTEMPTS = 5; // Codes taken by other instances are rare; this only bounds bad luck
 
     private final AttendanceSessionRepository sessionRepository;
     private final AttendanceRecordRepository recordRepository;
     private final UserRepository userRepository;
+    private final AttendanceSessionIndex sessionIndex;
+    private final AttendanceCodeAllocator codeAllocator;
+    private final AttendanceWriteBehindQueue writeBehindQueue;
+    private final AttendanceSessionExpiryScheduler expiryScheduler;
+    private final AttendanceMonthlyRollupRepository rollupRepository;
+    private final AttendanceRecordBatchWriter batchWriter;
+    private final AttendanceCalendarService attendanceCalendar;
+    private final WorkCalendar workCalendar;
+    private final AttendanceLiveHub liveHub;
+    private final TransactionTemplate transactionTemplate;
+
+    // Stats of months before the current one. They only change through bulk marks, which invalidate them here,
+    // so entries expire after attendance.stats-cache.ttl-seconds to pick up bulk marks made on other instances.
+    private final Cache<StatsKey, MonthlyAttendanceStatsDTO> pastMonthStats;
 
     @Value("${attendance.session.duration.seconds:60}") // Configurable duration for attendance code validity
     private long attendanceSessionDurationSeconds;
 
-    public AttendanceService(AttendanceSessionRepository sessionRepository, AttendanceRecordRepository recordRepository, UserRepository userRepository) {
+    @Value("${attendance.rotating-code.step-seconds:10}") // How long each code of a ROTATING session is shown
+    private long rotatingCodeStepSeconds;
+
+    public AttendanceService(AttendanceSessionRepository sessionRepository, AttendanceRecordRepository recordRepository,
+                             UserRepository userRepository, AttendanceSessionIndex sessionIndex,
+                             AttendanceCodeAllocator codeAllocator, AttendanceWriteBehindQueue writeBehindQueue,
+                             AttendanceSessionExpiryScheduler expiryScheduler, AttendanceMonthlyRollupRepository rollupRepository,
+                             AttendanceRecordBatchWriter batchWriter, AttendanceCalendarService attendanceCalendar, WorkCalendar workCalendar,
+                             AttendanceLiveHub liveHub, PlatformTransactionManager transactionManager,
+                             @Value("${attendance.stats-cache.max-size:10000}") long statsCacheMaxSize,
+                             @Value("${attendance.stats-cache.ttl-seconds:300}") long statsCacheTtlSeconds) {
         this.sessionRepository = sessionRepository;
         this.recordRepository = recordRepository;
         this.userRepository = userRepository;
+        this.sessionIndex = sessionIndex;
+        this.codeAllocator = codeAllocator;
+        this.writeBehindQueue = writeBehindQueue;
+        this.expiryScheduler = expiryScheduler;
+        this.rollupRepository = rollupRepository;
+        this.batchWriter = batchWriter;
+        this.attendanceCalendar = attendanceCalendar;
+        this.workCalendar = workCalendar;
+        this.liveHub = liveHub;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.pastMonthStats = Caffeine.newBuilder()
+                .maximumSize(statsCacheMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(statsCacheTtlSeconds))
+                .build();
     }
 
     /**
-     * Starts a new attendance session and generates a unique code.
+     * Starts a new attendance session with a code that no other active session holds.
      * @param adminUser The admin user initiating the session.
      * @return AttendanceSessionResponse containing the generated code and session details.
      */
     @Transactional
     public AttendanceSessionResponse startAttendanceSession(User adminUser) {
-        String code;
-        boolean uniqueCodeFound = false;
-        Random random = new Random();
-        // Generate a unique 6-digit code
-        do {
-            code = String.format("%06d", random.nextInt(1000000));
-            if (sessionRepository.findByAttendanceCodeAndIsActiveTrue(code).isEmpty()) {
-                uniqueCodeFound = true;
-            }
-        } while (!uniqueCodeFound);
+        return startAttendanceSession(adminUser, AttendanceCodeMode.STATIC);
+    }
 
-        LocalDateTime startTime = LocalDateTime.now();
+    /**
+     * Starts a new attendance session.
+     * STATIC sessions get a code that no other active session holds. ROTATING sessions get a random secret
+     * instead; their code is derived from it and changes every attendance.rotating-code.step-seconds.
+     * The code allocator only knows the codes this instance has seen, so a code another instance just handed
+     * out is rejected by the unique index on active codes; it is then held here and a fresh code is tried,
+     * up to MAX_CODE_ATTEMPTS times.
+     * @param adminUser The admin user initiating the session.
+     * @param codeMode How the session's code is produced.
+     * @return AttendanceSessionResponse containing the (current) code and session details.
+     * @throws IllegalStateException if no free code was found.
+     */
+    public AttendanceSessionResponse startAttendanceSession(User adminUser, AttendanceCodeMode codeMode) {
+        // Whole seconds, so rotation steps are the same after a restart reloads the (DATETIME) start time
+        LocalDateTime startTime = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
         LocalDateTime endTime = startTime.plusSeconds(attendanceSessionDurationSeconds);
 
+        AttendanceSession savedSession = null;
+        for (int attempt = 1; savedSession == null; attempt++) {
+            // Take an unused 6-digit code from the in-memory allocator (no database probes)
+            String allocatedCode = codeMode == AttendanceCodeMode.ROTATING ? null : codeAllocator.allocate();
+            try {
+                savedSession = transactionTemplate.execute(status -> saveSession(adminUser, codeMode, allocatedCode, startTime, endTime));
+            } catch (DataIntegrityViolationException e) {
+                if (allocatedCode == null || sessionRepository.findByAttendanceCodeAndIsActiveTrue(allocatedCode).isEmpty()) {
+                    codeAllocator.release(allocatedCode);
+                    throw e;
+                }
+                // Another instance's session holds the code: keep it held here (the session index releases it
+                // when that session ends) and try a fresh one
+                if (attempt == MAX_CODE_ATTEMPTS) {
+                    throw new IllegalStateException("No free attendance code found in " + attempt + " attempts.", e);
+                }
+                logger.info("Attendance code {} is already held by a session of another instance, trying another", allocatedCode);
+            } catch (RuntimeException e) {
+                codeAllocator.release(allocatedCode);
+                throw e;
+            }
+        }
+
+        String code = savedSession.getAttendanceCode();
+        Long stepSeconds = null;
+        if (codeMode == AttendanceCodeMode.ROTATING) {
+            code = RotatingCodeGenerator.codeAt(savedSession.getCodeSecret(), 0);
+            stepSeconds = rotatingCodeStepSeconds;
+        }
+        logger.info("Attendance session {} started by admin {} with {} code. Valid until {}", savedSession.getId(), adminUser.getUsername(), codeMode, endTime);
+
+        return new AttendanceSessionResponse(savedSession.getId(), code, savedSession.getStartTime(), savedSession.getEndTime(),
+                codeMode, stepSeconds, "Attendance session started successfully.");
+    }
+
+    /**
+     * Inserts a new session with the given code (STATIC) or a new secret (ROTATING). Runs in a transaction.
+     */
+    private AttendanceSession saveSession(User adminUser, AttendanceCodeMode codeMode, String code,
+                                          LocalDateTime startTime, LocalDateTime endTime) {
         AttendanceSession session = new AttendanceSession();
         session.setAdminUser(adminUser);
-        session.setAttendanceCode(code);
+        session.setCodeMode(codeMode);
+        if (codeMode == AttendanceCodeMode.ROTATING) {
+            session.setCodeSecret(RotatingCodeGenerator.newSecret());
+        } else {
+            session.setAttendanceCode(code);
+        }
         session.setStartTime(startTime);
         session.setEndTime(endTime);
         session.setIsActive(true); // Ensure it's active
 
         AttendanceSession savedSession = sessionRepository.save(session);
-        logger.info("Attendance session started by admin {} with code {}. Valid until {}", adminUser.getUsername(), code, endTime);
+        // Make the session markable once its row is committed (a failed commit is handled by the caller)
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                expiryScheduler.schedule(sessionIndex.register(savedSession));
+            }
+        });
+        return savedSession;
+    }
 
-        return new AttendanceSessionResponse(savedSession.getId(), savedSession.getAttendanceCode(), savedSession.getStartTime(), savedSession.getEndTime(), "Attendance session started successfully.");
+    /**
+     * Returns the code a rotating-code session is currently showing, for the admin's display.
+     * @param sessionId The session id.
+     * @return Map with the current code and the seconds until it changes.
+     * @throws IllegalArgumentException if no active rotating session has this id.
+     */
+    public Map<String, Object> getCurrentRotatingCode(Long sessionId) {
+        AttendanceSessionIndex.ActiveSession activeSession = sessionIndex.findRotating(sessionId);
+        LocalDateTime now = LocalDateTime.now();
+        if (activeSession == null || activeSession.isExpiredAt(now)) {
+            throw new IllegalArgumentException("No active rotating attendance session with id " + sessionId + ".");
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("sessionId", sessionId);
+        response.put("code", activeSession.currentCode(now, rotatingCodeStepSeconds));
+        response.put("secondsUntilRotation", activeSession.secondsUntilRotation(now, rotatingCodeStepSeconds));
+        response.put("endTime", activeSession.getEndTime());
+        return response;
+    }
+
+    /**
+     * Opens a live Server-Sent Events stream of an active session's marks, count and time remaining.
+     * @param sessionId The session id.
+     * @return The SseEmitter of the stream.
+     * @throws IllegalArgumentException if no active session has this id.
+     */
+    public SseEmitter subscribeToSession(Long sessionId) {
+        return liveHub.subscribe(sessionId);
     }
 
     /**
@@ -82,41 +237,155 @@ public class AttendanceService {
      * @param avengerUser The Avenger user marking attendance.
      * @param attendanceCode The code provided by the Avenger.
      * @throws IllegalArgumentException if code is invalid/expired or attendance already marked.
+     * @throws RejectedExecutionException if the write-behind buffer is full.
      */
-    @Transactional
     public void markAttendance(User avengerUser, String attendanceCode) {
-        AttendanceSession activeSession = sessionRepository.findByAttendanceCodeAndIsActiveTrue(attendanceCode)
-                .orElseThrow(() -> new IllegalArgumentException("Invalid or expired attendance code."));
+        markAttendance(avengerUser, attendanceCode, null);
+    }
+
+    /**
+     * Marks attendance for an Avenger using a given code.
+     * The code, its expiry and duplicate marks are checked against the in-memory session index:
+     * a static code is looked up directly, a rotating code is verified with a constant-time HMAC check
+     * against the given session (or each active rotating session when no session id is given).
+     * The record is then inserted in its own transaction, or, in write-behind mode, buffered and
+     * inserted by AttendanceWriteBehindQueue in a later batch.
+     * @param avengerUser The Avenger user marking attendance.
+     * @param attendanceCode The code provided by the Avenger.
+     * @param sessionId The session the code belongs to, if the client knows it (optional).
+     * @throws IllegalArgumentException if code is invalid/expired, matches several sessions and no session id
+     * was sent, or attendance is already marked.
+     * @throws RejectedExecutionException if the write-behind buffer is full.
+     */
+    public void markAttendance(User avengerUser, String attendanceCode, Long sessionId) {
+        LocalDateTime now = LocalDateTime.now();
+        AttendanceSessionIndex.ActiveSession activeSession = resolveSession(attendanceCode, sessionId, now);
+        if (activeSession == null) {
+            throw new IllegalArgumentException("Invalid or expired attendance code.");
+        }
 
-        // Check if session is still active based on time
-        if (LocalDateTime.now().isAfter(activeSession.getEndTime())) {
-            activeSession.setIsActive(false); // Mark as inactive if expired
-            sessionRepository.save(activeSession);
+        // Check if session is still active based on time (AttendanceSessionExpiryScheduler closes it in the database)
+        if (activeSession.isExpiredAt(now)) {
             throw new IllegalArgumentException("Attendance session has expired.");
         }
 
-        // Check if Avenger has already marked attendance for this session
-        if (recordRepository.existsBySessionIdAndUserId(activeSession.getId(), avengerUser.getId())) {
+        // Check if Avenger has already marked attendance for this session (atomic, so concurrent duplicates lose)
+        Long userId = avengerUser.getId();
+        if (!activeSession.markUser(userId)) {
             throw new IllegalArgumentException("You have already marked attendance for this session.");
         }
 
-        AttendanceRecord record = new AttendanceRecord();
-        record.setSession(activeSession);
-        record.setUser(avengerUser);
-        record.setMarkedAt(LocalDateTime.now());
+        if (writeBehindQueue.isEnabled()) {
+            if (!writeBehindQueue.enqueue(activeSession, userId, now)) {
+                activeSession.unmarkUser(userId);
+                throw new RejectedExecutionException("Attendance write-behind buffer is full.");
+            }
+            liveHub.publishMark(activeSession, avengerUser.getUsername(), now);
+            logger.debug("Avenger {} attendance for session code {} accepted for write-behind", avengerUser.getUsername(), attendanceCode);
+            return;
+        }
 
-        recordRepository.save(record);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                AttendanceRecord record = new AttendanceRecord();
+                record.setSession(sessionRepository.getReferenceById(activeSession.getSessionId()));
+                record.setUser(userRepository.getReferenceById(userId));
+                record.setMarkedAt(now);
+                recordRepository.save(record);
+                batchWriter.upsertMonthlyRollups(List.of(new AttendanceRecordBatchWriter.Row(activeSession.getSessionId(), userId, now)));
+            });
+        } catch (DataIntegrityViolationException e) {
+            if (recordRepository.existsBySessionIdAndUserId(activeSession.getSessionId(), userId)) {
+                // Marked through another instance after this one indexed the session; stays marked here
+                throw new IllegalArgumentException("You have already marked attendance for this session.");
+            }
+            activeSession.unmarkUser(userId);
+            throw e;
+        } catch (RuntimeException e) {
+            // The database stays authoritative: forget the mark if the insert did not commit
+            activeSession.unmarkUser(userId);
+            throw e;
+        }
+        attendanceCalendar.recordPresence(userId, now.toLocalDate());
+        liveHub.publishMark(activeSession, avengerUser.getUsername(), now);
         logger.info("Avenger {} marked attendance for session code {}", avengerUser.getUsername(), attendanceCode);
     }
 
+    /**
+     * Marks attendance of many Avengers for a session at once, e.g. from a shared kiosk or a paper list.
+     * The users and their existing records are checked in one query, then every missing record is inserted
+     * in a single JDBC batch of INSERT IGNORE statements (which also updates the monthly rollups); a record
+     * that raced in between the check and the insert is reported as already marked. Unlike markAttendance, this works for closed sessions too.
+     * @param sessionId The session id.
+     * @param userIds The ids of the Avengers to mark (duplicates in the list are ignored).
+     * @param markedAt When they were present, or null for now (open session) or the session's start time (closed session).
+     * @return The BulkAttendanceResult with one outcome per distinct user id, in request order.
+     * @throws IllegalArgumentException if the session does not exist.
+     */
+    public BulkAttendanceResult bulkMarkAttendance(Long sessionId, List<Long> userIds, LocalDateTime markedAt) {
+        AttendanceSession session = sessionRepository.findById(sessionId)
+                .orElseThrow(() -> new IllegalArgumentException("Attendance session not found with ID: " + sessionId));
+        AttendanceSessionIndex.ActiveSession activeSession = sessionIndex.findById(sessionId);
+        LocalDateTime now = LocalDateTime.now();
+        if (markedAt == null) {
+            markedAt = activeSession != null && !activeSession.isExpiredAt(now) ? now : session.getStartTime();
+        }
+
+        Set<Long> distinctUserIds = new LinkedHashSet<>(userIds);
+        Map<Long, Object[]> candidates = new HashMap<>();
+        for (Object[] row : recordRepository.findMarkCandidates(sessionId, distinctUserIds)) {
+            candidates.put((Long) row[0], row);
+        }
+
+        Map<Long, BulkAttendanceResult.Outcome> outcomes = new LinkedHashMap<>();
+        List<AttendanceRecordBatchWriter.Row> rows = new ArrayList<>();
+        for (Long userId : distinctUserIds) {
+            Object[] candidate = candidates.get(userId);
+            if (candidate == null) {
+                outcomes.put(userId, BulkAttendanceResult.Outcome.UNKNOWN_USER);
+            } else if (candidate[2] != Role.AVENGER) {
+                outcomes.put(userId, BulkAttendanceResult.Outcome.NOT_AN_AVENGER);
+            } else if (candidate[3] != null) {
+                outcomes.put(userId, BulkAttendanceResult.Outcome.ALREADY_MARKED);
+            } else {
+                outcomes.put(userId, BulkAttendanceResult.Outcome.MARKED);
+                rows.add(new AttendanceRecordBatchWriter.Row(sessionId, userId, markedAt));
+            }
+        }
+
+        int[] inserted = batchWriter.insertIgnoringDuplicates(rows);
+        int markedCount = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            Long userId = rows.get(i).userId();
+            if (inserted[i] == 0) {
+                // Marked by someone else between the check and the insert
+                outcomes.put(userId, BulkAttendanceResult.Outcome.ALREADY_MARKED);
+                continue;
+            }
+            markedCount++;
+            attendanceCalendar.recordPresence(userId, markedAt.toLocalDate());
+            if (activeSession != null && activeSession.markUser(userId)) {
+                liveHub.publishMark(activeSession, (String) candidates.get(userId)[1], markedAt);
+            }
+        }
+        if (markedCount > 0 && YearMonth.from(markedAt).isBefore(YearMonth.from(now))) {
+            // Records for a past month change its cached stats
+            YearMonth markedMonth = YearMonth.from(markedAt);
+            rows.forEach(row -> pastMonthStats.invalidate(new StatsKey(row.userId(), markedMonth)));
+        }
+        logger.info("Bulk-marked attendance of {} of {} users for session {}", markedCount, distinctUserIds.size(), sessionId);
+
+        List<BulkAttendanceResult.UserOutcome> result = new ArrayList<>(outcomes.size());
+        outcomes.forEach((userId, outcome) -> result.add(new BulkAttendanceResult.UserOutcome(userId, outcome)));
+        return new BulkAttendanceResult(sessionId, markedCount, result);
+    }
+
     /**
      * Retrieves all attendance records (for admin).
      * @return List of AttendanceRecordDTOs.
      */
     public List<AttendanceRecordDTO> getAllAttendanceRecords() {
-        return recordRepository.findAll().stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        return recordRepository.findRecordDtos(null);
     }
 
     /**
@@ -125,52 +394,204 @@ public class AttendanceService {
      * @return List of AttendanceRecordDTOs for the given Avenger.
      */
     public List<AttendanceRecordDTO> getAttendanceHistoryForAvenger(User avengerUser) {
-        return recordRepository.findByUserOrderByMarkedAtDesc(avengerUser).stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        return recordRepository.findRecordDtos(avengerUser.getId());
+    }
+
+    /**
+     * Retrieves one page of attendance records, newest first, using keyset pagination on
+     * (marked_at, session_id, user_id) so later pages cost the same as the first.
+     * @param sessionId Only records of this session (optional).
+     * @param userId Only records of this Avenger (optional).
+     * @param from Only records marked at or after this time (optional).
+     * @param to Only records marked before this time (optional).
+     * @param cursor The nextCursor of the previous page, or null for the first page.
+     * @param limit The page size (capped at MAX_PAGE_SIZE).
+     * @return The CursorPage of AttendanceRecordDTOs.
+     * @throws IllegalArgumentException if the cursor is malformed.
+     */
+    public CursorPage<AttendanceRecordDTO> getAttendanceRecordPage(Long sessionId, Long userId, LocalDateTime from, LocalDateTime to,
+                                                                   String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        RecordCursor after = cursor == null || cursor.isBlank() ? null : RecordCursor.decode(cursor);
+
+        // One extra row tells whether there is a next page
+        List<AttendanceRecordDTO> rows = recordRepository.findRecordDtoPage(sessionId, userId, from, to,
+                after == null ? null : after.markedAt(), after == null ? null : after.sessionId(), after == null ? null : after.userId(),
+                Limit.of(pageSize + 1));
+        if (rows.size() <= pageSize) {
+            return new CursorPage<>(rows, null);
+        }
+        List<AttendanceRecordDTO> items = new ArrayList<>(rows.subList(0, pageSize));
+        AttendanceRecordDTO last = items.get(pageSize - 1);
+        return new CursorPage<>(items, new RecordCursor(last.getMarkedAt(), last.getSessionId(), last.getAvengerId()).encode());
     }
 
     /**
      * Calculates attendance statistics for a specific Avenger for a given month.
+     * Served from the monthly rollup (one primary-key lookup); past months are cached.
      * @param avengerUser The Avenger user.
      * @param yearMonth The YearMonth for which to calculate stats.
      * @return A map containing "daysPresent", "daysAbsent", "attendanceRate".
      */
     public AttendanceStatsDTO getAttendanceStatsForAvenger(User avengerUser, YearMonth yearMonth) {
-        LocalDate startOfMonth = yearMonth.atDay(1);
-        LocalDate endOfMonth = yearMonth.atEndOfMonth();
+        MonthlyAttendanceStatsDTO stats = getMonthlyStats(avengerUser.getId(), yearMonth);
+        return new AttendanceStatsDTO(stats.getDaysPresent(), stats.getDaysAbsent(), stats.getAttendanceRate());
+    }
 
-        // Count actual workdays in the month (excluding weekends)
-        long totalWorkDaysInMonth = IntStream.rangeClosed(1, endOfMonth.getDayOfMonth())
-                .mapToObj(day -> LocalDate.of(yearMonth.getYear(), yearMonth.getMonth(), day))
-                .filter(date -> date.getDayOfWeek() != DayOfWeek.SATURDAY && date.getDayOfWeek() != DayOfWeek.SUNDAY)
-                .count();
+    /**
+     * Calculates attendance statistics for a specific Avenger for every month of a year up to the current month,
+     * with at most one query.
+     * @param avengerUser The Avenger user.
+     * @param year The year.
+     * @return One MonthlyAttendanceStatsDTO per month, in month order.
+     */
+    public List<MonthlyAttendanceStatsDTO> getYearlyAttendanceStatsForAvenger(User avengerUser, int year) {
+        Long userId = avengerUser.getId();
+        YearMonth currentMonth = YearMonth.now();
+        int lastMonth = year < currentMonth.getYear() ? 12 : year == currentMonth.getYear() ? currentMonth.getMonthValue() : 0;
 
-        // Count days present from records for the given month
-        long daysPresent = recordRepository.countByUserAndMarkedAtBetween(avengerUser, startOfMonth, endOfMonth);
+        // A year that is entirely in the past is usually fully cached
+        List<MonthlyAttendanceStatsDTO> result = new ArrayList<>(lastMonth);
+        for (int month = 1; month <= lastMonth; month++) {
+            YearMonth yearMonth = YearMonth.of(year, month);
+            MonthlyAttendanceStatsDTO cached = yearMonth.isBefore(currentMonth) ? pastMonthStats.getIfPresent(new StatsKey(userId, yearMonth)) : null;
+            if (cached == null) {
+                break;
+            }
+            result.add(cached);
+        }
+        if (result.size() == lastMonth) {
+            return result;
+        }
 
-        long daysAbsent = totalWorkDaysInMonth - daysPresent;
-        if (daysAbsent < 0) daysAbsent = 0; // Should not happen if logic is correct
+        Map<Integer, AttendanceMonthlyRollup> rollups = new HashMap<>();
+        rollupRepository.findByUserIdAndPeriodBetweenOrderByPeriod(userId, toPeriod(YearMonth.of(year, 1)), toPeriod(YearMonth.of(year, 12)))
+                .forEach(rollup -> rollups.put(rollup.getPeriod(), rollup));
+        result.clear();
+        for (int month = 1; month <= lastMonth; month++) {
+            YearMonth yearMonth = YearMonth.of(year, month);
+            MonthlyAttendanceStatsDTO stats = toStats(yearMonth, rollups.get(toPeriod(yearMonth)));
+            if (yearMonth.isBefore(currentMonth)) {
+                pastMonthStats.put(new StatsKey(userId, yearMonth), stats);
+            }
+            result.add(stats);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a year of an Avenger's attendance as day-bitmaps, with totals and streaks.
+     * @param avengerUser The Avenger user.
+     * @param year The year.
+     * @return The AttendanceCalendarDTO.
+     */
+    public AttendanceCalendarDTO getAttendanceCalendarForAvenger(User avengerUser, int year) {
+        return attendanceCalendar.getCalendar(avengerUser.getId(), year);
+    }
+
+    /**
+     * Rebuilds the monthly rollups from the attendance records if the rollup table is empty,
+     * e.g. on the first start after the table was added.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildMonthlyRollupsIfEmpty() {
+        if (rollupRepository.count() > 0 || recordRepository.count() == 0) {
+            return;
+        }
+        Integer rebuilt = transactionTemplate.execute(status -> rollupRepository.rebuildFromRecords());
+        logger.info("Rebuilt {} monthly attendance rollups from attendance records", rebuilt);
+    }
+
+    /**
+     * Drops cached stats of past months, whose absences depend on the holidays.
+     * @param event The work calendar change.
+     */
+    @EventListener
+    public void onWorkCalendarChanged(WorkCalendarChangedEvent event) {
+        pastMonthStats.invalidateAll();
+    }
+
+    private MonthlyAttendanceStatsDTO getMonthlyStats(Long userId, YearMonth yearMonth) {
+        if (yearMonth.isBefore(YearMonth.now())) {
+            // Past months no longer change, so their stats are computed once
+            return pastMonthStats.get(new StatsKey(userId, yearMonth),
+                    key -> toStats(yearMonth, rollupRepository.findByUserIdAndPeriod(userId, toPeriod(yearMonth)).orElse(null)));
+        }
+        return toStats(yearMonth, rollupRepository.findByUserIdAndPeriod(userId, toPeriod(yearMonth)).orElse(null));
+    }
+
+    private MonthlyAttendanceStatsDTO toStats(YearMonth yearMonth, AttendanceMonthlyRollup rollup) {
+        // Only days up to today count, as in the attendance calendar: later workdays are not absences yet
+        int workDays = workCalendar.workdayMask(yearMonth) & AttendanceCalendarService.elapsedDaysMask(yearMonth, LocalDate.now());
+        int presentDays = rollup == null ? 0 : rollup.getPresentDaysMask();
+
+        long workDaysSoFar = Integer.bitCount(workDays);
+        long daysPresent = Integer.bitCount(presentDays);
+        long daysAbsent = Integer.bitCount(workDays & ~presentDays); // Marks on weekends do not offset absences
 
         double attendanceRate = 0.0;
-        if (totalWorkDaysInMonth > 0) {
-            attendanceRate = (double) daysPresent / totalWorkDaysInMonth * 100;
+        if (workDaysSoFar > 0) {
+            attendanceRate = (double) Integer.bitCount(workDays & presentDays) / workDaysSoFar * 100;
+        }
+        return new MonthlyAttendanceStatsDTO(yearMonth.getYear(), yearMonth.getMonthValue(), daysPresent, daysAbsent, attendanceRate,
+                rollup == null ? null : rollup.getFirstMarkedAt(), rollup == null ? null : rollup.getLastMarkedAt());
+    }
+
+    /**
+     * Position of the last row of a page, sent to clients as an opaque URL-safe string.
+     */
+    private record RecordCursor(LocalDateTime markedAt, Long sessionId, Long userId) {
+        private String encode() {
+            String value = markedAt + "|" + sessionId + "|" + userId;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private static RecordCursor decode(String cursor) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+                return new RecordCursor(LocalDateTime.parse(parts[0]), Long.valueOf(parts[1]), Long.valueOf(parts[2]));
+            } catch (IllegalArgumentException | DateTimeParseException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Invalid cursor.");
+            }
         }
+    }
+
+    private static int toPeriod(YearMonth yearMonth) {
+        return yearMonth.getYear() * 100 + yearMonth.getMonthValue();
+    }
 
-        return new AttendanceStatsDTO(daysPresent, daysAbsent, attendanceRate);
+    private record StatsKey(Long userId, YearMonth yearMonth) {
     }
 
     /**
-     * Converts an AttendanceRecord entity to an AttendanceRecordDTO.
-     * @param record The AttendanceRecord entity.
-     * @return The corresponding AttendanceRecordDTO.
+     * Finds the active session an entered code belongs to.
+     * @param attendanceCode The code provided by the Avenger.
+     * @param sessionId The session id sent with the code, or null.
+     * @param now The current time.
+     * @return The matching session, or null if the code matches none.
+     * @throws IllegalArgumentException if no session id was sent and the code matches several sessions.
      */
-    private AttendanceRecordDTO convertToDto(AttendanceRecord record) {
-        AttendanceRecordDTO dto = new AttendanceRecordDTO();
-        dto.setSessionId(record.getSession().getId());
-        dto.setSessionCode(record.getSession().getAttendanceCode());
-        dto.setAvengerUsername(record.getUser().getUsername());
-        dto.setMarkedAt(record.getMarkedAt());
-        return dto;
+    private AttendanceSessionIndex.ActiveSession resolveSession(String attendanceCode, Long sessionId, LocalDateTime now) {
+        if (sessionId != null) {
+            AttendanceSessionIndex.ActiveSession rotating = sessionIndex.findRotating(sessionId);
+            if (rotating != null) {
+                return rotating.matchesRotatingCode(attendanceCode, now, rotatingCodeStepSeconds) ? rotating : null;
+            }
+        }
+        AttendanceSessionIndex.ActiveSession match = sessionIndex.find(attendanceCode);
+        if (match != null && match.getSessionId().equals(sessionId)) {
+            return match;
+        }
+        // A rotating code can equal a live static code (or another rotating code); without a session id
+        // such a mark is refused rather than credited to whichever session happens to be checked first
+        for (AttendanceSessionIndex.ActiveSession rotating : sessionIndex.getRotatingSessions()) {
+            if (rotating.matchesRotatingCode(attendanceCode, now, rotatingCodeStepSeconds)) {
+                if (match != null) {
+                    throw new IllegalArgumentException("This code matches more than one attendance session; mark again with the session id.");
+                }
+                match = rotating;
+            }
+        }
+        return match;
     }
 }
@@ -0,0 +1,186 @@
+package com.au.cl.service;
+
+import com.au.cl.event.AttendanceSessionClosedEvent;
+import com.au.cl.model.AttendanceSession;
+import com.au.cl.repository.AttendanceRecordRepository;
+import com.au.cl.repository.AttendanceSessionRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closes attendance sessions at their end time, so sessions nobody marks after expiry do not stay active.
+ *
+ * Sessions started on this instance are put in a DelayQueue, and a single thread wakes up as each one ends.
+ * It also wakes every attendance.expiry.sweep-interval-ms to catch sessions started on other instances or
+ * before a restart. Each run removes expired sessions from the local index, then claims expired active
+ * sessions in the database with SELECT ... FOR UPDATE SKIP LOCKED and closes them with one UPDATE.
+ * Because of SKIP LOCKED, several instances can run this concurrently and each session is closed, and its
+ * AttendanceSessionClosedEvent published, exactly once.
+ */
+@Component
+public class AttendanceSessionExpiryScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(AttendanceSessionExpiryScheduler.class);
+
+    private final AttendanceSessionRepository sessionRepository;
+    private final AttendanceRecordRepository recordRepository;
+    private final AttendanceSessionIndex sessionIndex;
+    private final AttendanceWriteBehindQueue writeBehindQueue;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final long sweepIntervalMillis;
+    private final int batchSize;
+
+    private final DelayQueue<ExpiringSession> expiringSessions = new DelayQueue<>();
+    private volatile boolean running;
+    private Thread worker;
+
+    public AttendanceSessionExpiryScheduler(AttendanceSessionRepository sessionRepository,
+                                            AttendanceRecordRepository recordRepository,
+                                            AttendanceSessionIndex sessionIndex,
+                                            AttendanceWriteBehindQueue writeBehindQueue,
+                                            ApplicationEventPublisher eventPublisher,
+                                            PlatformTransactionManager transactionManager,
+                                            @Value("${attendance.expiry.sweep-interval-ms:15000}") long sweepIntervalMillis,
+                                            @Value("${attendance.expiry.batch-size:500}") int batchSize) {
+        this.sessionRepository = sessionRepository;
+        this.recordRepository = recordRepository;
+        this.sessionIndex = sessionIndex;
+        this.writeBehindQueue = writeBehindQueue;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.sweepIntervalMillis = sweepIntervalMillis;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Starts the expiry thread once the session index has been rebuilt, with a timer for every indexed session.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(1) // After AttendanceSessionIndex#rebuild
+    public void start() {
+        sessionIndex.getActiveSessions().forEach(this::schedule);
+        running = true;
+        worker = new Thread(this::run, "attendance-session-expiry");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Arranges for a session to be closed at its end time.
+     * @param session The indexed session.
+     */
+    public void schedule(AttendanceSessionIndex.ActiveSession session) {
+        expiringSessions.put(new ExpiringSession(session.getEndTime()));
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                // Wake at the next end time, or after the sweep interval if that comes first
+                if (expiringSessions.poll(sweepIntervalMillis, TimeUnit.MILLISECONDS) != null) {
+                    expiringSessions.drainTo(new ArrayList<>()); // Sessions ending at the same time share one run
+                }
+                closeExpiredSessions();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Error closing expired attendance sessions: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Closes every session whose end time has passed.
+     */
+    public void closeExpiredSessions() {
+        LocalDateTime now = LocalDateTime.now();
+        for (AttendanceSessionIndex.ActiveSession session : sessionIndex.getActiveSessions()) {
+            if (session.isExpiredAt(now)) {
+                sessionIndex.remove(session); // Also releases its code
+            }
+        }
+        // Records accepted before the end time must be in the database before the final counts are taken
+        writeBehindQueue.flush();
+
+        List<AttendanceSessionClosedEvent> closed;
+        do {
+            closed = transactionTemplate.execute(status -> closeBatch(now));
+            closed.forEach(eventPublisher::publishEvent); // After commit, so listeners see the closed state
+        } while (closed.size() == batchSize);
+    }
+
+    private List<AttendanceSessionClosedEvent> closeBatch(LocalDateTime now) {
+        List<Long> sessionIds = sessionRepository.lockExpiredActiveSessionIds(now, batchSize);
+        if (sessionIds.isEmpty()) {
+            return List.of();
+        }
+        sessionRepository.deactivateAll(sessionIds);
+
+        Map<Long, Long> attendeeCounts = new HashMap<>();
+        for (Object[] row : recordRepository.countBySessionIds(sessionIds)) {
+            attendeeCounts.put((Long) row[0], (Long) row[1]);
+        }
+        List<AttendanceSessionClosedEvent> events = new ArrayList<>(sessionIds.size());
+        for (AttendanceSession session : sessionRepository.findAllById(sessionIds)) {
+            events.add(new AttendanceSessionClosedEvent(session.getId(), session.getAttendanceCode(), session.getEndTime(),
+                    attendeeCounts.getOrDefault(session.getId(), 0L)));
+        }
+        logger.info("Closed {} expired attendance sessions", sessionIds.size());
+        return events;
+    }
+
+    /**
+     * Logs the final attendance count of each closed session.
+     * @param event The session closed event.
+     */
+    @EventListener
+    public void logClosedSession(AttendanceSessionClosedEvent event) {
+        logger.info("Attendance session {} closed at {} with {} attendees", event.getSessionId(), event.getEndTime(), event.getAttendeeCount());
+    }
+
+    /**
+     * DelayQueue entry that becomes available when a session ends.
+     */
+    private record ExpiringSession(LocalDateTime endTime) implements Delayed {
+        @Override
+        public long getDelay(TimeUnit unit) {
+            // One second past the end time, so the session is strictly expired (end_time < now) when the run starts
+            long nanos = Duration.between(LocalDateTime.now(), endTime.plusSeconds(1)).toNanos();
+            return unit.convert(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+}
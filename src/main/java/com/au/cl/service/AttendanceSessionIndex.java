@@ -0,0 +1,334 @@
+package com.au.cl.service;
+
+import com.au.cl.model.AttendanceCodeMode;
+import com.au.cl.model.AttendanceSession;
+import com.au.cl.repository.AttendanceRecordRepository;
+import com.au.cl.repository.AttendanceSessionRepository;
+import com.au.cl.util.ConcurrentBitSet;
+import com.au.cl.util.RotatingCodeGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory index of active attendance sessions: static-code sessions keyed by attendance code,
+ * rotating-code sessions keyed by session id (their code changes, so it cannot be a key).
+ * Each entry remembers which users have already marked, so markAttendance can validate the code,
+ * check expiry and reject duplicates without a database round trip. The attendance tables remain
+ * the source of truth: the index is rebuilt from them at startup.
+ *
+ * The index is per instance. Sessions started on another instance are picked up when a code or id misses the
+ * index (one query on the active session), and every attendance.session-index.reload-ms, which also finds
+ * rotating sessions marked without a session id. Marks made through other instances after a session was
+ * indexed here are not seen; the records' primary key still rejects them as duplicates.
+ */
+@Component
+public class AttendanceSessionIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(AttendanceSessionIndex.class);
+
+    private final AttendanceSessionRepository sessionRepository;
+    private final AttendanceRecordRepository recordRepository;
+    private final AttendanceCodeAllocator codeAllocator;
+
+    private final Map<String, ActiveSession> sessionsByCode = new ConcurrentHashMap<>();
+    private final Map<Long, ActiveSession> rotatingSessionsById = new ConcurrentHashMap<>();
+
+    public AttendanceSessionIndex(AttendanceSessionRepository sessionRepository, AttendanceRecordRepository recordRepository,
+                                  AttendanceCodeAllocator codeAllocator) {
+        this.sessionRepository = sessionRepository;
+        this.recordRepository = recordRepository;
+        this.codeAllocator = codeAllocator;
+    }
+
+    /**
+     * Rebuilds the index from the sessions flagged active in the database, including who has already marked.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(0) // Before AttendanceSessionExpiryScheduler#start
+    public void rebuild() {
+        sessionsByCode.clear();
+        rotatingSessionsById.clear();
+        for (AttendanceSession session : sessionRepository.findByIsActiveTrue()) {
+            indexStarted(session);
+        }
+        logger.info("Attendance session index rebuilt with {} active sessions", sessionsByCode.size() + rotatingSessionsById.size());
+    }
+
+    /**
+     * Adds active sessions started on other instances since the last reload.
+     */
+    @Scheduled(initialDelayString = "${attendance.session-index.reload-ms:5000}", fixedDelayString = "${attendance.session-index.reload-ms:5000}")
+    public void reload() {
+        LocalDateTime now = LocalDateTime.now();
+        int added = 0;
+        for (AttendanceSession session : sessionRepository.findByIsActiveTrue()) {
+            if (session.getEndTime().isAfter(now) && findIndexed(session) == null) {
+                indexStarted(session);
+                added++;
+            }
+        }
+        if (added > 0) {
+            logger.info("Added {} attendance sessions started on other instances to the index", added);
+        }
+    }
+
+    /**
+     * Adds a newly started session and holds its code. Call once the session row has been committed.
+     * @param session The persisted session.
+     * @return The index entry for the session.
+     */
+    public ActiveSession register(AttendanceSession session) {
+        return add(toEntry(session));
+    }
+
+    /**
+     * Adds an entry unless the session is already indexed, e.g. because a concurrent lookup loaded it.
+     * @return The entry now in the index.
+     */
+    private ActiveSession add(ActiveSession active) {
+        ActiveSession existing = active.isRotating()
+                ? rotatingSessionsById.putIfAbsent(active.getSessionId(), active)
+                : sessionsByCode.putIfAbsent(active.getCode(), active);
+        if (existing != null) {
+            return existing;
+        }
+        if (!active.isRotating()) {
+            codeAllocator.reserve(active.getCode());
+        }
+        return active;
+    }
+
+    /**
+     * Looks up an active session by its code.
+     * @param code The attendance code.
+     * @return The active session, or null if no session with this code is indexed.
+     */
+    public ActiveSession find(String code) {
+        ActiveSession session = sessionsByCode.get(code);
+        if (session != null) {
+            return session;
+        }
+        return sessionRepository.findByAttendanceCodeAndIsActiveTrue(code)
+                .filter(started -> started.getEndTime().isAfter(LocalDateTime.now()))
+                .map(this::indexStarted)
+                .orElse(null);
+    }
+
+    /**
+     * Looks up an active rotating-code session by id.
+     * @param sessionId The session id.
+     * @return The active session, or null if no rotating session with this id is indexed.
+     */
+    public ActiveSession findRotating(Long sessionId) {
+        ActiveSession session = rotatingSessionsById.get(sessionId);
+        if (session != null) {
+            return session;
+        }
+        session = loadStarted(sessionId);
+        return session != null && session.isRotating() ? session : null;
+    }
+
+    /**
+     * Looks up an active session of either kind by id.
+     * Static sessions are keyed by code, so they are scanned; only a handful are active at a time.
+     * @param sessionId The session id.
+     * @return The active session, or null if no session with this id is indexed.
+     */
+    public ActiveSession findById(Long sessionId) {
+        ActiveSession rotating = rotatingSessionsById.get(sessionId);
+        if (rotating != null) {
+            return rotating;
+        }
+        for (ActiveSession session : sessionsByCode.values()) {
+            if (session.getSessionId().equals(sessionId)) {
+                return session;
+            }
+        }
+        return loadStarted(sessionId);
+    }
+
+    public Collection<ActiveSession> getRotatingSessions() {
+        return List.copyOf(rotatingSessionsById.values());
+    }
+
+    /**
+     * Removes a session from the index, e.g. because it expired, and releases its code for reuse.
+     * @param session The session to remove.
+     * @return True if this call removed it, false if it was already gone.
+     */
+    public boolean remove(ActiveSession session) {
+        if (session.isRotating()) {
+            return rotatingSessionsById.remove(session.getSessionId(), session);
+        }
+        if (sessionsByCode.remove(session.getCode(), session)) {
+            codeAllocator.release(session.getCode());
+            return true;
+        }
+        return false;
+    }
+
+    public Collection<ActiveSession> getActiveSessions() {
+        List<ActiveSession> sessions = new ArrayList<>(sessionsByCode.values());
+        sessions.addAll(rotatingSessionsById.values());
+        return sessions;
+    }
+
+    /**
+     * Loads an active, unexpired session that is missing from the index, e.g. because another instance started it.
+     * @return The index entry, or null if the session does not exist, was closed or has ended.
+     */
+    private ActiveSession loadStarted(Long sessionId) {
+        return sessionRepository.findById(sessionId)
+                .filter(session -> Boolean.TRUE.equals(session.getIsActive()) && session.getEndTime().isAfter(LocalDateTime.now()))
+                .map(this::indexStarted)
+                .orElse(null);
+    }
+
+    /**
+     * Indexes a session found in the database with the users who already marked it.
+     * @return The index entry.
+     */
+    private ActiveSession indexStarted(AttendanceSession session) {
+        ActiveSession active = toEntry(session);
+        recordRepository.findUserIdsBySessionId(session.getId()).forEach(active::markUser);
+        return add(active);
+    }
+
+    private static ActiveSession toEntry(AttendanceSession session) {
+        return new ActiveSession(session.getId(), session.getAttendanceCode(), session.getStartTime(),
+                session.getEndTime(), session.getCodeSecret());
+    }
+
+    private ActiveSession findIndexed(AttendanceSession session) {
+        return session.getCodeSecret() != null ? rotatingSessionsById.get(session.getId()) : sessionsByCode.get(session.getAttendanceCode());
+    }
+
+    /**
+     * An indexed attendance session and the set of users who marked it.
+     */
+    public static final class ActiveSession {
+        private final Long sessionId;
+        private final String code;          // Null for rotating-code sessions
+        private final LocalDateTime startTime;
+        private final LocalDateTime endTime;
+        private final byte[] codeSecret;    // Null for static-code sessions
+        private final ConcurrentBitSet markedUsers = new ConcurrentBitSet();
+        private final AtomicInteger markedCount = new AtomicInteger();
+
+        ActiveSession(Long sessionId, String code, LocalDateTime startTime, LocalDateTime endTime, byte[] codeSecret) {
+            this.sessionId = sessionId;
+            this.code = code;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.codeSecret = codeSecret;
+        }
+
+        public boolean isRotating() {
+            return codeSecret != null;
+        }
+
+        /**
+         * Computes the rotating code shown at the given time.
+         * @param now The current time.
+         * @param stepSeconds How long each code is shown.
+         * @return The current 6-digit code.
+         */
+        public String currentCode(LocalDateTime now, long stepSeconds) {
+            return RotatingCodeGenerator.codeAt(codeSecret, stepAt(now, stepSeconds));
+        }
+
+        /**
+         * Checks an entered code against the rotating code of the current step and, to allow for the time it
+         * takes to read and type it, the previous step. Both comparisons are constant-time.
+         * @param enteredCode The code entered by the avenger.
+         * @param now The current time.
+         * @param stepSeconds How long each code is shown.
+         * @return True if the code is valid now.
+         */
+        public boolean matchesRotatingCode(String enteredCode, LocalDateTime now, long stepSeconds) {
+            long step = stepAt(now, stepSeconds);
+            boolean current = RotatingCodeGenerator.matches(codeSecret, step, enteredCode);
+            boolean previous = step > 0 && RotatingCodeGenerator.matches(codeSecret, step - 1, enteredCode);
+            return current | previous;
+        }
+
+        /**
+         * Seconds until the rotating code changes.
+         * @param now The current time.
+         * @param stepSeconds How long each code is shown.
+         * @return The remaining seconds of the current step.
+         */
+        public long secondsUntilRotation(LocalDateTime now, long stepSeconds) {
+            return stepSeconds - Math.floorMod(Duration.between(startTime, now).getSeconds(), stepSeconds);
+        }
+
+        private long stepAt(LocalDateTime now, long stepSeconds) {
+            return Math.max(0, Duration.between(startTime, now).getSeconds() / stepSeconds);
+        }
+
+        /**
+         * Records that a user marked this session.
+         * @param userId The user's id.
+         * @return True if the user had not marked yet; false for a duplicate.
+         */
+        public boolean markUser(Long userId) {
+            if (markedUsers.setIfAbsent(userId)) {
+                markedCount.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Forgets a mark whose database insert did not commit, so the user can try again.
+         * @param userId The user's id.
+         */
+        public void unmarkUser(Long userId) {
+            if (markedUsers.clear(userId)) {
+                markedCount.decrementAndGet();
+            }
+        }
+
+        public boolean hasMarked(Long userId) {
+            return markedUsers.get(userId);
+        }
+
+        public boolean isExpiredAt(LocalDateTime now) {
+            return now.isAfter(endTime);
+        }
+
+        public Long getSessionId() {
+            return sessionId;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        public LocalDateTime getStartTime() {
+            return startTime;
+        }
+
+        public LocalDateTime getEndTime() {
+            return endTime;
+        }
+
+        public int getMarkedCount() {
+            return markedCount.get();
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.au.cl.service;
+
+import com.au.cl.repository.AttendanceRecordBatchWriter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Optional write-behind buffer for attendance marks (attendance.write-behind.enabled).
+ * markAttendance hands an accepted mark to this queue and returns; a background thread inserts the
+ * buffered records in JDBC batches of up to batch-size rows, at least every flush-interval-ms.
+ *
+ * The buffer is bounded: when it is full, enqueue waits up to offer-timeout-ms and then refuses the mark,
+ * so callers see backpressure instead of unbounded memory growth. Pending marks are flushed when a session
+ * closes and drained on graceful shutdown.
+ *
+ * Marks are confirmed to the avenger before they are written, so a failed batch is retried up to
+ * retry-attempts times with exponential backoff from retry-backoff-ms. If it still fails, it is split in halves
+ * until the failing rows are isolated, so one bad row (e.g. a user deleted meanwhile) does not drop the rest.
+ * A row that cannot be written on its own goes to the attendance.dead-letter log with its session, user and
+ * time for re-insertion, and is removed from the session index, so the avenger can mark again.
+ */
+@Component
+public class AttendanceWriteBehindQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(AttendanceWriteBehindQueue.class);
+    private static final Logger deadLetterLogger = LoggerFactory.getLogger("attendance.dead-letter");
+
+    private final AttendanceRecordBatchWriter batchWriter;
+    private final AttendanceCalendarService attendanceCalendar;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final long offerTimeoutMillis;
+    private final int retryAttempts;
+    private final long retryBackoffMillis;
+
+    private final BlockingQueue<PendingMark> queue;
+    private final ReentrantLock flushLock = new ReentrantLock(); // One batch in flight at a time
+    private final LongAdder writtenRecords = new LongAdder();
+    private final LongAdder failedRecords = new LongAdder();
+    private final LongAdder rejectedMarks = new LongAdder();
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    public AttendanceWriteBehindQueue(AttendanceRecordBatchWriter batchWriter, AttendanceCalendarService attendanceCalendar,
+                                      @Value("${attendance.write-behind.enabled:false}") boolean enabled,
+                                      @Value("${attendance.write-behind.capacity:10000}") int capacity,
+                                      @Value("${attendance.write-behind.batch-size:200}") int batchSize,
+                                      @Value("${attendance.write-behind.flush-interval-ms:50}") long flushIntervalMillis,
+                                      @Value("${attendance.write-behind.offer-timeout-ms:100}") long offerTimeoutMillis,
+                                      @Value("${attendance.write-behind.retry-attempts:3}") int retryAttempts,
+                                      @Value("${attendance.write-behind.retry-backoff-ms:100}") long retryBackoffMillis) {
+        this.batchWriter = batchWriter;
+        this.attendanceCalendar = attendanceCalendar;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.retryAttempts = Math.max(1, retryAttempts);
+        this.retryBackoffMillis = retryBackoffMillis;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        flusher = new Thread(this::runFlusher, "attendance-write-behind");
+        flusher.start();
+        logger.info("Attendance write-behind enabled: capacity {}, batch size {}, flush interval {} ms",
+                queue.remainingCapacity(), batchSize, flushIntervalMillis);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Buffers an accepted mark for insertion.
+     * @param session The index entry of the marked session.
+     * @param userId The id of the avenger who marked.
+     * @param markedAt When the mark was accepted.
+     * @return True if the mark was buffered, false if the buffer stayed full for offer-timeout-ms.
+     */
+    public boolean enqueue(AttendanceSessionIndex.ActiveSession session, Long userId, LocalDateTime markedAt) {
+        try {
+            if (queue.offer(new PendingMark(session, userId, markedAt), offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        rejectedMarks.increment();
+        return false;
+    }
+
+    /**
+     * Writes every mark buffered so far, in the calling thread. Called when a session closes,
+     * so its records are in the database before anyone reads them.
+     */
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            while (writeBatch()) {
+                // Keep going until the buffer is empty
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        flusher.interrupt();
+        flusher.join(TimeUnit.SECONDS.toMillis(10));
+        flush(); // Drain whatever was accepted before shutdown
+        logger.info("Attendance write-behind drained: {} records written, {} failed", writtenRecords.sum(), failedRecords.sum());
+    }
+
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    public long getWrittenRecords() {
+        return writtenRecords.sum();
+    }
+
+    public long getFailedRecords() {
+        return failedRecords.sum();
+    }
+
+    public long getRejectedMarks() {
+        return rejectedMarks.sum();
+    }
+
+    private void runFlusher() {
+        while (running) {
+            List<PendingMark> batch = new ArrayList<>(batchSize);
+            try {
+                // Marks are only ever taken off the queue under flushLock, so flush() never misses one in flight
+                flushLock.lockInterruptibly();
+                try {
+                    // Wait for the first mark, then give the batch up to flush-interval-ms to fill
+                    PendingMark first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                    while (batch.size() < batchSize) {
+                        queue.drainTo(batch, batchSize - batch.size());
+                        long remaining = deadline - System.nanoTime();
+                        if (batch.size() >= batchSize || remaining <= 0) {
+                            break;
+                        }
+                        PendingMark next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                    write(batch);
+                } finally {
+                    flushLock.unlock();
+                }
+            } catch (InterruptedException e) {
+                if (!batch.isEmpty()) {
+                    write(batch); // Already taken off the queue; shutdown() drains the rest
+                }
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Attendance write-behind flusher error: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Drains and writes one batch. Must be called with flushLock held.
+     * @return True if a batch was written, false if the buffer was empty.
+     */
+    private boolean writeBatch() {
+        List<PendingMark> batch = new ArrayList<>(batchSize);
+        queue.drainTo(batch, batchSize);
+        if (batch.isEmpty()) {
+            return false;
+        }
+        write(batch);
+        return true;
+    }
+
+    /**
+     * Writes a batch, retrying it with backoff, then isolating the rows that keep failing.
+     */
+    private void write(List<PendingMark> batch) {
+        RuntimeException failure = null;
+        boolean interrupted = false;
+        for (int attempt = 0; attempt < retryAttempts; attempt++) {
+            if (attempt > 0 && !backOff(attempt)) {
+                interrupted = true; // Shutting down: isolate the bad rows without waiting
+                break;
+            }
+            try {
+                insert(batch);
+                return;
+            } catch (RuntimeException e) {
+                failure = e;
+                logger.warn("Could not write {} buffered attendance records (attempt {} of {}): {}",
+                        batch.size(), attempt + 1, retryAttempts, e.getMessage());
+            }
+        }
+        isolate(batch, failure);
+        if (interrupted) {
+            Thread.currentThread().interrupt(); // Only now, as the pool refuses connections to interrupted threads
+        }
+    }
+
+    /**
+     * Writes the halves of a failed batch separately, down to single rows, and dead-letters the rows that fail alone.
+     */
+    private void isolate(List<PendingMark> marks, RuntimeException failure) {
+        if (marks.size() == 1) {
+            PendingMark mark = marks.get(0);
+            failedRecords.increment();
+            deadLetterLogger.error("session={} user={} markedAt={}: {}", mark.session().getSessionId(), mark.userId(),
+                    mark.markedAt(), failure.getMessage(), failure);
+            mark.session().unmarkUser(mark.userId());
+            return;
+        }
+        int half = marks.size() / 2;
+        for (List<PendingMark> part : List.of(marks.subList(0, half), marks.subList(half, marks.size()))) {
+            try {
+                insert(part);
+            } catch (RuntimeException e) {
+                isolate(part, e);
+            }
+        }
+    }
+
+    private void insert(List<PendingMark> marks) {
+        List<AttendanceRecordBatchWriter.Row> rows = new ArrayList<>(marks.size());
+        for (PendingMark mark : marks) {
+            rows.add(new AttendanceRecordBatchWriter.Row(mark.session().getSessionId(), mark.userId(), mark.markedAt()));
+        }
+        int[] inserted = batchWriter.insertIgnoringDuplicates(rows);
+        for (int i = 0; i < rows.size(); i++) {
+            if (inserted[i] != 0) { // A duplicate written through another instance has no day of its own
+                writtenRecords.increment();
+                attendanceCalendar.recordPresence(rows.get(i).userId(), rows.get(i).markedAt().toLocalDate());
+            }
+        }
+    }
+
+    /**
+     * Sleeps before a retry, doubling the wait with every attempt.
+     * @return False if the thread was interrupted; the caller restores the interrupt.
+     */
+    private boolean backOff(int attempt) {
+        try {
+            Thread.sleep(retryBackoffMillis << (attempt - 1));
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    private record PendingMark(AttendanceSessionIndex.ActiveSession session, Long userId, LocalDateTime markedAt) {
+    }
+}
@@ -0,0 +1,217 @@
+package com.au.cl.service;
+
+import com.au.cl.dto.LedgerReconciliationReport;
+import com.au.cl.dto.LedgerReconciliationReport.Drift;
+import com.au.cl.model.LedgerDailyRollup;
+import com.au.cl.model.LedgerDailyRollup.LedgerDailyRollupId;
+import com.au.cl.model.Transaction.TransactionType;
+import com.au.cl.repository.LedgerDailyRollupRepository;
+import com.au.cl.repository.TransactionRepository;
+import com.au.cl.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks ledger_daily_rollup against the raw transactions and repairs it.
+ *
+ * Users are split into partitions of ledger.reconcile.partition-size ids, reconciled in parallel on
+ * ledger.reconcile.workers threads. Each partition runs in one transaction that first locks its users: every
+ * payment updates the receiver's balance before it writes the rollup, so no payment to these users can commit
+ * while their rollups are recomputed with one GROUP BY over their transactions and compared row by row.
+ * Drifted rows are rewritten (ledger.reconcile.repair) and reported. Runs nightly (ledger.reconcile.cron),
+ * from the admin API, and at startup when the rollup table is still empty.
+ */
+@Component
+public class LedgerRollupReconciler {
+
+    private static final Logger logger = LoggerFactory.getLogger(LedgerRollupReconciler.class);
+    private static final int MAX_REPORTED_DRIFTS = 100;
+    private static final double AMOUNT_TOLERANCE = 1e-6; // Sums of doubles in a different order differ in the last bits
+
+    private final UserRepository userRepository;
+    private final TransactionRepository transactionRepository;
+    private final LedgerDailyRollupRepository rollupRepository;
+    private final PaymentTotalsIndex paymentTotalsIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final int partitionSize;
+    private final boolean repair;
+
+    private final ExecutorService workers;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public LedgerRollupReconciler(UserRepository userRepository, TransactionRepository transactionRepository,
+                                  LedgerDailyRollupRepository rollupRepository, PaymentTotalsIndex paymentTotalsIndex,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${ledger.reconcile.partition-size:500}") int partitionSize,
+                                  @Value("${ledger.reconcile.workers:4}") int workerCount,
+                                  @Value("${ledger.reconcile.repair:true}") boolean repair) {
+        this.userRepository = userRepository;
+        this.transactionRepository = transactionRepository;
+        this.rollupRepository = rollupRepository;
+        this.paymentTotalsIndex = paymentTotalsIndex;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.partitionSize = partitionSize;
+        this.repair = repair;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "ledger-reconcile-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Builds the rollups from the transactions if the rollup table is empty,
+     * e.g. on the first start after the table was added.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(0) // Before PaymentTotalsIndex#load
+    public void rebuildIfEmpty() {
+        if (rollupRepository.count() > 0 || transactionRepository.count() == 0) {
+            return;
+        }
+        LedgerReconciliationReport report = reconcile();
+        logger.info("Built {} daily ledger rollups from the transactions", report.getDriftedRows());
+    }
+
+    @Scheduled(cron = "${ledger.reconcile.cron:0 30 3 * * *}")
+    public void scheduledReconcile() {
+        try {
+            reconcile();
+        } catch (IllegalArgumentException e) {
+            logger.info("Skipping scheduled ledger reconciliation: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Compares every rollup row with the transactions and repairs drifted rows.
+     * @return The LedgerReconciliationReport.
+     * @throws IllegalArgumentException if a reconciliation is already running on this instance.
+     */
+    public LedgerReconciliationReport reconcile() {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalArgumentException("A ledger reconciliation is already running.");
+        }
+        try {
+            LocalDateTime startedAt = LocalDateTime.now();
+            long start = System.nanoTime();
+            List<Long> userIds = userRepository.findAllIds();
+
+            List<Future<PartitionResult>> partitions = new ArrayList<>();
+            for (int from = 0; from < userIds.size(); from += partitionSize) {
+                Long firstUserId = userIds.get(from);
+                Long lastUserId = userIds.get(Math.min(userIds.size(), from + partitionSize) - 1);
+                partitions.add(workers.submit(() -> transactionTemplate.execute(status -> reconcilePartition(firstUserId, lastUserId))));
+            }
+
+            long rowsChecked = 0;
+            long driftedRows = 0;
+            List<Drift> drifts = new ArrayList<>();
+            for (Future<PartitionResult> partition : partitions) {
+                PartitionResult result = partition.get();
+                rowsChecked += result.rowsChecked();
+                driftedRows += result.drifts().size();
+                result.drifts().stream().limit(MAX_REPORTED_DRIFTS - drifts.size()).forEach(drifts::add);
+            }
+
+            LedgerReconciliationReport report = new LedgerReconciliationReport(startedAt, (System.nanoTime() - start) / 1_000_000,
+                    partitions.size(), userIds.size(), rowsChecked, driftedRows, repair, drifts);
+            if (driftedRows > 0 && repair) {
+                paymentTotalsIndex.load(); // It was loaded from the drifted rows
+            }
+            if (driftedRows > 0) {
+                logger.warn("Ledger reconciliation found {} drifted rollup rows out of {} ({}repaired) in {} ms",
+                        driftedRows, rowsChecked, repair ? "" : "not ", report.getDurationMillis());
+            } else {
+                logger.info("Ledger reconciliation checked {} rollup rows of {} users in {} ms, no drift",
+                        rowsChecked, userIds.size(), report.getDurationMillis());
+            }
+            return report;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ledger reconciliation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Ledger reconciliation failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            running.set(false);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private PartitionResult reconcilePartition(Long firstUserId, Long lastUserId) {
+        userRepository.lockIdsBetween(firstUserId, lastUserId);
+
+        Map<LedgerDailyRollupId, LedgerDailyRollup> expected = new HashMap<>();
+        for (Object[] row : rollupRepository.aggregateTransactions(firstUserId, lastUserId)) {
+            LedgerDailyRollup rollup = new LedgerDailyRollup(((Number) row[0]).longValue(), TransactionType.valueOf((String) row[1]),
+                    ((Date) row[2]).toLocalDate(), ((Number) row[3]).longValue(), ((Number) row[4]).doubleValue());
+            expected.put(idOf(rollup), rollup);
+        }
+        Map<LedgerDailyRollupId, LedgerDailyRollup> actual = new HashMap<>();
+        rollupRepository.findByUserIdBetween(firstUserId, lastUserId).forEach(rollup -> actual.put(idOf(rollup), rollup));
+
+        Set<LedgerDailyRollupId> ids = new HashSet<>(expected.keySet());
+        ids.addAll(actual.keySet());
+        List<Drift> drifts = new ArrayList<>();
+        for (LedgerDailyRollupId id : ids) {
+            LedgerDailyRollup expectedRollup = expected.get(id);
+            LedgerDailyRollup actualRollup = actual.get(id);
+            long expectedCount = expectedRollup != null ? expectedRollup.getPaymentCount() : 0;
+            double expectedAmount = expectedRollup != null ? expectedRollup.getAmount() : 0;
+            long actualCount = actualRollup != null ? actualRollup.getPaymentCount() : 0;
+            double actualAmount = actualRollup != null ? actualRollup.getAmount() : 0;
+            if (expectedCount == actualCount && Math.abs(expectedAmount - actualAmount) <= AMOUNT_TOLERANCE) {
+                continue;
+            }
+            drifts.add(new Drift(id.getUserId(), id.getTransactionType(), id.getRollupDate(), expectedCount, expectedAmount,
+                    actualCount, actualAmount));
+            if (!repair) {
+                continue;
+            }
+            if (expectedRollup == null) {
+                rollupRepository.delete(actualRollup);
+            } else if (actualRollup == null) {
+                rollupRepository.save(expectedRollup);
+            } else {
+                actualRollup.setPaymentCount(expectedCount); // Managed entity: written on commit
+                actualRollup.setAmount(expectedAmount);
+            }
+        }
+        return new PartitionResult(ids.size(), drifts);
+    }
+
+    private static LedgerDailyRollupId idOf(LedgerDailyRollup rollup) {
+        return new LedgerDailyRollupId(rollup.getUserId(), rollup.getTransactionType(), rollup.getRollupDate());
+    }
+
+    private record PartitionResult(long rowsChecked, List<Drift> drifts) {
+    }
+}
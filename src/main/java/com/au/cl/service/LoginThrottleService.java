@@ -0,0 +1,158 @@
+package com.au.cl.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throttles /api/auth/login and /api/auth/refresh with in-memory token buckets, per client IP and per username.
+ * Checks run before any password hashing, so a credential-stuffing burst is turned away cheaply.
+ *
+ * Buckets live in Caffeine caches (internally striped, no global lock). A bucket that has been idle long
+ * enough to refill completely is indistinguishable from a new one, so it is expired after that time; a hard
+ * size cap keeps memory bounded when an attacker rotates through many IPs or usernames.
+ */
+@Service
+public class LoginThrottleService {
+
+    private final BucketPolicy loginPerIp;
+    private final BucketPolicy loginPerUsername;
+    private final BucketPolicy refreshPerIp;
+    private final BucketPolicy refreshPerUsername;
+
+    private final LongAdder throttledLoginsByIp = new LongAdder();
+    private final LongAdder throttledLoginsByUsername = new LongAdder();
+    private final LongAdder throttledRefreshes = new LongAdder();
+
+    public LoginThrottleService(@Value("${auth.throttle.login.ip.capacity:20}") int loginIpCapacity,
+                                @Value("${auth.throttle.login.ip.refill-per-minute:20}") int loginIpRefill,
+                                @Value("${auth.throttle.login.username.capacity:5}") int loginUserCapacity,
+                                @Value("${auth.throttle.login.username.refill-per-minute:5}") int loginUserRefill,
+                                @Value("${auth.throttle.refresh.capacity:30}") int refreshCapacity,
+                                @Value("${auth.throttle.refresh.refill-per-minute:30}") int refreshRefill,
+                                @Value("${auth.throttle.max-tracked-keys:100000}") long maxTrackedKeys) {
+        this.loginPerIp = new BucketPolicy(loginIpCapacity, loginIpRefill, maxTrackedKeys);
+        this.loginPerUsername = new BucketPolicy(loginUserCapacity, loginUserRefill, maxTrackedKeys);
+        this.refreshPerIp = new BucketPolicy(refreshCapacity, refreshRefill, maxTrackedKeys);
+        this.refreshPerUsername = new BucketPolicy(refreshCapacity, refreshRefill, maxTrackedKeys);
+    }
+
+    /**
+     * Takes one login attempt from the client's IP bucket and the target username's bucket.
+     * @param clientIp The remote address of the request.
+     * @param username The username being logged in to.
+     * @return 0 if the attempt may proceed, otherwise the number of seconds to wait (for Retry-After).
+     */
+    public long tryAcquireLogin(String clientIp, String username) {
+        long retryAfter = loginPerIp.tryAcquire(clientIp);
+        if (retryAfter > 0) {
+            throttledLoginsByIp.increment();
+            return retryAfter;
+        }
+        retryAfter = loginPerUsername.tryAcquire(normalize(username));
+        if (retryAfter > 0) {
+            throttledLoginsByUsername.increment();
+        }
+        return retryAfter;
+    }
+
+    /**
+     * Takes one refresh attempt from the client's IP bucket. Call before the refresh token is parsed.
+     * @param clientIp The remote address of the request.
+     * @return 0 if the attempt may proceed, otherwise the number of seconds to wait.
+     */
+    public long tryAcquireRefreshByIp(String clientIp) {
+        return countRefresh(refreshPerIp.tryAcquire(clientIp));
+    }
+
+    /**
+     * Takes one refresh attempt from the bucket of the username the refresh token was issued to.
+     * @param username The token subject.
+     * @return 0 if the attempt may proceed, otherwise the number of seconds to wait.
+     */
+    public long tryAcquireRefreshByUsername(String username) {
+        return countRefresh(refreshPerUsername.tryAcquire(normalize(username)));
+    }
+
+    public long getThrottledLoginsByIp() {
+        return throttledLoginsByIp.sum();
+    }
+
+    public long getThrottledLoginsByUsername() {
+        return throttledLoginsByUsername.sum();
+    }
+
+    public long getThrottledRefreshes() {
+        return throttledRefreshes.sum();
+    }
+
+    public long getTrackedKeys() {
+        return loginPerIp.buckets.estimatedSize() + loginPerUsername.buckets.estimatedSize()
+                + refreshPerIp.buckets.estimatedSize() + refreshPerUsername.buckets.estimatedSize();
+    }
+
+    private long countRefresh(long retryAfter) {
+        if (retryAfter > 0) {
+            throttledRefreshes.increment();
+        }
+        return retryAfter;
+    }
+
+    private static String normalize(String username) {
+        return username == null ? "" : username.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Capacity and refill rate shared by all buckets of one kind, plus the buckets themselves.
+     */
+    private static final class BucketPolicy {
+        private final int capacity;
+        private final double tokensPerNano;
+        private final Cache<String, TokenBucket> buckets;
+
+        BucketPolicy(int capacity, int refillPerMinute, long maxKeys) {
+            this.capacity = capacity;
+            this.tokensPerNano = refillPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+            long nanosToFull = (long) Math.ceil(capacity / tokensPerNano);
+            this.buckets = Caffeine.newBuilder()
+                    .maximumSize(maxKeys)
+                    .expireAfterAccess(Duration.ofNanos(nanosToFull))
+                    .build();
+        }
+
+        long tryAcquire(String key) {
+            return buckets.get(key, k -> new TokenBucket(capacity)).tryAcquire(this, System.nanoTime());
+        }
+    }
+
+    /**
+     * A single token bucket. Only its own monitor is taken, so different keys never contend.
+     */
+    private static final class TokenBucket {
+        private double tokens;
+        private long lastRefillNanos;
+
+        TokenBucket(int capacity) {
+            this.tokens = capacity;
+            this.lastRefillNanos = System.nanoTime();
+        }
+
+        synchronized long tryAcquire(BucketPolicy policy, long now) {
+            tokens = Math.min(policy.capacity, tokens + (now - lastRefillNanos) * policy.tokensPerNano);
+            lastRefillNanos = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            long nanosUntilToken = (long) Math.ceil((1 - tokens) / policy.tokensPerNano);
+            long nanosPerSecond = TimeUnit.SECONDS.toNanos(1);
+            return Math.max(1, (nanosUntilToken + nanosPerSecond - 1) / nanosPerSecond); // Rounded up to whole seconds
+        }
+    }
+}
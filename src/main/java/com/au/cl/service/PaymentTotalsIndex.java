@@ -0,0 +1,214 @@
+package com.au.cl.service;
+
+import com.au.cl.event.PaymentsRecordedEvent;
+import com.au.cl.model.Transaction.TransactionType;
+import com.au.cl.repository.LedgerDailyRollupRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.time.temporal.IsoFields;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory payment totals per transaction type and day, answering the total of any date range in O(log n)
+ * without a database query.
+ *
+ * Each type has a Fenwick tree (binary indexed tree) over consecutive days, so both adding a day's payments
+ * and summing a range take O(log days). The trees are loaded from ledger_daily_rollup at startup and after
+ * the ledger reconciliation repaired rollups, updated from PaymentsRecordedEvent after each payment commits,
+ * and reloaded every payment-totals.reload-ms to pick up payments made through other instances.
+ *
+ * A reload queries the rollups without holding the lock, so sums and payments are never blocked by it. Payments
+ * recorded while the query runs are applied to the current trees and also buffered, then added to the new trees
+ * when they are swapped in, as they may be missing from the query's snapshot. Only a payment whose commit
+ * lands in the instant the query starts can be counted twice, until the next reload.
+ */
+@Component
+public class PaymentTotalsIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentTotalsIndex.class);
+
+    private final LedgerDailyRollupRepository rollupRepository;
+
+    private final Object loadLock = new Object(); // One reload at a time
+    private Map<TransactionType, DailyFenwickTree> trees; // Null until loaded; guarded by this
+    private List<PaymentsRecordedEvent.DailyTotal> recordedDuringLoad; // Non-null while a reload runs; guarded by this
+
+    public PaymentTotalsIndex(LedgerDailyRollupRepository rollupRepository) {
+        this.rollupRepository = rollupRepository;
+    }
+
+    /**
+     * Returns the total amount of a transaction type paid on the days from fromDate to toDate, both inclusive.
+     * @param type The transaction type.
+     * @param fromDate The first day.
+     * @param toDate The last day.
+     * @return The total amount, 0 if the range is empty.
+     */
+    public double sum(TransactionType type, LocalDate fromDate, LocalDate toDate) {
+        if (fromDate.isAfter(toDate)) {
+            return 0;
+        }
+        synchronized (this) {
+            if (trees != null) {
+                return trees.get(type).sum(fromDate, toDate);
+            }
+        }
+        load();
+        synchronized (this) {
+            return trees.get(type).sum(fromDate, toDate);
+        }
+    }
+
+    /**
+     * (Re)loads every tree from the daily rollups.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(1) // After LedgerRollupReconciler#rebuildIfEmpty
+    @Scheduled(initialDelayString = "${payment-totals.reload-ms:3600000}", fixedDelayString = "${payment-totals.reload-ms:3600000}")
+    public void load() {
+        synchronized (loadLock) {
+            synchronized (this) {
+                recordedDuringLoad = new ArrayList<>();
+            }
+            try {
+                List<Object[]> rows = rollupRepository.sumAmountByTypeAndDate();
+                Map<TransactionType, DailyFenwickTree> loaded = new EnumMap<>(TransactionType.class);
+                for (TransactionType type : TransactionType.values()) {
+                    loaded.put(type, new DailyFenwickTree(LocalDate.now()));
+                }
+                for (Object[] row : rows) {
+                    loaded.get((TransactionType) row[0]).add((LocalDate) row[1], ((Number) row[2]).doubleValue());
+                }
+                synchronized (this) {
+                    for (PaymentsRecordedEvent.DailyTotal total : recordedDuringLoad) {
+                        loaded.get(total.type()).add(total.date(), total.amount());
+                    }
+                    trees = loaded;
+                }
+                logger.info("Loaded payment totals of {} days", rows.size());
+            } finally {
+                synchronized (this) {
+                    recordedDuringLoad = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds newly committed payments to the trees.
+     * @param event The payments summed per type and day.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onPaymentsRecorded(PaymentsRecordedEvent event) {
+        if (recordedDuringLoad != null) {
+            recordedDuringLoad.addAll(event.getTotals()); // May be missing from the reload's snapshot
+        }
+        if (trees == null) {
+            return; // Not loaded yet: the first load reads them from the rollups
+        }
+        for (PaymentsRecordedEvent.DailyTotal total : event.getTotals()) {
+            trees.get(total.type()).add(total.date(), total.amount());
+        }
+    }
+
+    /**
+     * Date ranges offered by the admin dashboard, relative to today.
+     */
+    public enum Period {
+        TODAY,
+        LAST_7_DAYS,
+        LAST_30_DAYS,
+        MONTH_TO_DATE,
+        QUARTER_TO_DATE,
+        YEAR_TO_DATE;
+
+        public LocalDate startDate(LocalDate today) {
+            return switch (this) {
+                case TODAY -> today;
+                case LAST_7_DAYS -> today.minusDays(6);
+                case LAST_30_DAYS -> today.minusDays(29);
+                case MONTH_TO_DATE -> today.withDayOfMonth(1);
+                case QUARTER_TO_DATE -> today.with(IsoFields.DAY_OF_QUARTER, 1);
+                case YEAR_TO_DATE -> today.with(TemporalAdjusters.firstDayOfYear());
+            };
+        }
+    }
+
+    /**
+     * Fenwick tree of daily amounts over days firstDay, firstDay + 1, ...; grows in either direction as needed.
+     * Not thread-safe: PaymentTotalsIndex synchronizes access.
+     */
+    static class DailyFenwickTree {
+        private LocalDate firstDay;
+        private double[] daily; // Amount per day, kept to rebuild the tree when it grows
+        private double[] tree; // 1-based: tree[i] holds the sum of daily[i - (i & -i), i)
+
+        DailyFenwickTree(LocalDate aroundDay) {
+            firstDay = aroundDay.minusYears(1);
+            daily = new double[2 * 366];
+            tree = new double[daily.length + 1];
+        }
+
+        void add(LocalDate day, double amount) {
+            ensureCovers(day);
+            int index = dayIndex(day);
+            daily[index] += amount;
+            for (int i = index + 1; i < tree.length; i += i & -i) {
+                tree[i] += amount;
+            }
+        }
+
+        double sum(LocalDate fromDate, LocalDate toDate) {
+            // Clamp to the covered days: days outside them have no payments
+            int from = Math.max(0, (int) Math.min(daily.length, fromDate.toEpochDay() - firstDay.toEpochDay()));
+            int to = Math.max(0, (int) Math.min(daily.length, toDate.toEpochDay() - firstDay.toEpochDay() + 1));
+            return prefixSum(to) - prefixSum(from);
+        }
+
+        private double prefixSum(int dayCount) { // Sum of daily[0, dayCount)
+            double sum = 0;
+            for (int i = dayCount; i > 0; i -= i & -i) {
+                sum += tree[i];
+            }
+            return sum;
+        }
+
+        private int dayIndex(LocalDate day) {
+            return (int) (day.toEpochDay() - firstDay.toEpochDay());
+        }
+
+        private void ensureCovers(LocalDate day) {
+            long index = day.toEpochDay() - firstDay.toEpochDay();
+            if (index >= 0 && index < daily.length) {
+                return;
+            }
+            // Double the capacity towards the day (at least enough to reach it) and rebuild in O(days)
+            int length = (int) Math.max(2L * daily.length, index < 0 ? daily.length - index : index + 1);
+            int shift = index < 0 ? length - daily.length : 0;
+            double[] grown = new double[length];
+            System.arraycopy(daily, 0, grown, shift, daily.length);
+            firstDay = firstDay.minusDays(shift);
+            daily = grown;
+            tree = new double[length + 1];
+            for (int i = 1; i <= length; i++) {
+                tree[i] += daily[i - 1];
+                int parent = i + (i & -i);
+                if (parent <= length) {
+                    tree[parent] += tree[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package com.au.cl.service;
+
+import com.au.cl.dto.PayrollRunDTO;
+import com.au.cl.dto.SalaryScheduleDTO;
+import com.au.cl.dto.SalaryScheduleRequest;
+import com.au.cl.model.PayrollRun;
+import com.au.cl.model.PayrollRunChunk;
+import com.au.cl.model.PayrollRunStatus;
+import com.au.cl.model.Role;
+import com.au.cl.model.SalarySchedule;
+import com.au.cl.model.Transaction.TransactionType;
+import com.au.cl.model.User;
+import com.au.cl.repository.LedgerBatchWriter;
+import com.au.cl.repository.PayrollRunChunkRepository;
+import com.au.cl.repository.PayrollRunItemRepository;
+import com.au.cl.repository.PayrollRunRepository;
+import com.au.cl.repository.SalaryScheduleRepository;
+import com.au.cl.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Recurring payroll: admins set a monthly salary per Avenger, and a run pays every active schedule once a month
+ * with standard SALARY transactions.
+ *
+ * When a run starts, every active schedule is frozen into a payroll_run_items row, in chunks of payroll.chunk-size
+ * Avengers (by ascending id), so the run pays exactly the salaries that were set at that moment, however late a
+ * chunk is paid. Chunks are paid in
+ * parallel on a pool of payroll.workers threads, each in its own transaction that also checkpoints the chunk as
+ * COMPLETED, so a crash leaves every chunk either fully paid or untouched. Unfinished runs are resumed at startup
+ * and on every scheduler tick, paying only the PENDING chunks; a chunk that another instance completed in the
+ * meantime is skipped by the conditional checkpoint update. Runs start automatically on payroll.pay-day
+ * (payroll.auto-run.enabled) or manually from the admin API.
+ */
+@Service
+public class PayrollService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PayrollService.class);
+
+    private final SalaryScheduleRepository scheduleRepository;
+    private final PayrollRunRepository runRepository;
+    private final PayrollRunChunkRepository chunkRepository;
+    private final PayrollRunItemRepository itemRepository;
+    private final UserRepository userRepository;
+    private final LedgerBatchWriter ledgerBatchWriter;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final int payDay;
+    private final boolean autoRunEnabled;
+
+    private final ExecutorService workers;
+    private final Map<Long, AtomicInteger> runsInProgress = new ConcurrentHashMap<>(); // Run id -> chunks still queued here
+
+    public PayrollService(SalaryScheduleRepository scheduleRepository, PayrollRunRepository runRepository,
+                          PayrollRunChunkRepository chunkRepository, PayrollRunItemRepository itemRepository,
+                          UserRepository userRepository,
+                          LedgerBatchWriter ledgerBatchWriter, PlatformTransactionManager transactionManager,
+                          @Value("${payroll.chunk-size:200}") int chunkSize,
+                          @Value("${payroll.workers:4}") int workerCount,
+                          @Value("${payroll.pay-day:1}") int payDay,
+                          @Value("${payroll.auto-run.enabled:true}") boolean autoRunEnabled) {
+        this.scheduleRepository = scheduleRepository;
+        this.runRepository = runRepository;
+        this.chunkRepository = chunkRepository;
+        this.itemRepository = itemRepository;
+        this.userRepository = userRepository;
+        this.ledgerBatchWriter = ledgerBatchWriter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.payDay = payDay;
+        this.autoRunEnabled = autoRunEnabled;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "payroll-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Creates or updates the salary schedule of an Avenger.
+     * @param adminUser The admin setting the salary; salaries are paid in their name.
+     * @param userId The Avenger's id.
+     * @param request The monthly amount, description and whether the schedule is active.
+     * @return The saved SalaryScheduleDTO.
+     * @throws IllegalArgumentException if the user does not exist or is not an Avenger.
+     */
+    @Transactional
+    public SalaryScheduleDTO saveSchedule(User adminUser, Long userId, SalaryScheduleRequest request) {
+        User avenger = userRepository.findById(userId)
+                .filter(user -> user.getRole() == Role.AVENGER)
+                .orElseThrow(() -> new IllegalArgumentException("Avenger not found with ID: " + userId));
+
+        SalarySchedule schedule = scheduleRepository.findById(userId).orElseGet(SalarySchedule::new);
+        schedule.setUserId(userId);
+        schedule.setUser(avenger);
+        schedule.setCreatedBy(userRepository.getReferenceById(adminUser.getId()));
+        schedule.setMonthlyAmount(request.getMonthlyAmount());
+        schedule.setDescription(request.getDescription());
+        schedule.setActive(request.getActive() == null || request.getActive());
+        schedule.setUpdatedAt(LocalDateTime.now());
+        SalarySchedule saved = scheduleRepository.save(schedule);
+        logger.info("Admin {} set the salary of {} to {} (active: {})", adminUser.getUsername(), avenger.getUsername(),
+                saved.getMonthlyAmount(), saved.getActive());
+        return convertToDto(saved);
+    }
+
+    /**
+     * Stops paying an Avenger's salary, keeping the schedule for reference.
+     * @param userId The Avenger's id.
+     * @throws IllegalArgumentException if the Avenger has no schedule.
+     */
+    @Transactional
+    public void deactivateSchedule(Long userId) {
+        SalarySchedule schedule = scheduleRepository.findById(userId)
+                .orElseThrow(() -> new IllegalArgumentException("No salary schedule for user ID: " + userId));
+        schedule.setActive(false);
+        schedule.setUpdatedAt(LocalDateTime.now());
+        logger.info("Salary schedule of user {} deactivated", userId);
+    }
+
+    public List<SalaryScheduleDTO> getSchedules() {
+        return scheduleRepository.findAllWithUser().stream()
+                .map(this::convertToDto)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Starts the payroll run of a month and pays it in the background.
+     * @param period The month to pay.
+     * @return The new run's PayrollRunDTO.
+     * @throws IllegalArgumentException if that month already has a run.
+     */
+    public PayrollRunDTO startRun(YearMonth period) {
+        PayrollRun run;
+        try {
+            run = transactionTemplate.execute(status -> planRun(period));
+        } catch (DataIntegrityViolationException e) {
+            throw new IllegalArgumentException("Payroll for " + period + " has already been run.");
+        }
+        logger.info("Payroll run {} for {} started with {} chunks", run.getId(), period, run.getTotalChunks());
+        resumeRun(run);
+        return convertToDto(run);
+    }
+
+    public List<PayrollRunDTO> getRuns() {
+        return runRepository.findAllByOrderByPeriodDesc().stream()
+                .map(this::convertToDto)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns a run with its current progress.
+     * @param runId The run id.
+     * @return The PayrollRunDTO.
+     * @throws IllegalArgumentException if the run does not exist.
+     */
+    public PayrollRunDTO getRun(Long runId) {
+        return runRepository.findById(runId)
+                .map(this::convertToDto)
+                .orElseThrow(() -> new IllegalArgumentException("Payroll run not found with ID: " + runId));
+    }
+
+    /**
+     * Starts this month's run once the pay day has come, and resumes unfinished runs.
+     */
+    @Scheduled(cron = "${payroll.cron:0 0 * * * *}")
+    public void scheduledTick() {
+        YearMonth currentMonth = YearMonth.now();
+        // A pay day of 29-31 falls on the last day of shorter months
+        int monthPayDay = Math.min(payDay, currentMonth.lengthOfMonth());
+        if (autoRunEnabled && LocalDate.now().getDayOfMonth() >= monthPayDay && runRepository.findByPeriod(toPeriod(currentMonth)).isEmpty()) {
+            try {
+                startRun(currentMonth);
+            } catch (IllegalArgumentException e) {
+                logger.debug("Payroll for {} was started elsewhere", currentMonth); // Another instance won the race
+            }
+        }
+        resumeUnfinishedRuns();
+    }
+
+    /**
+     * Resumes runs that were interrupted, e.g. by a crash or restart.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinishedRuns() {
+        runRepository.findByStatus(PayrollRunStatus.RUNNING).forEach(this::resumeRun);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // Chunks not yet started stay PENDING and are paid after the restart
+        workers.shutdownNow();
+        workers.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    private PayrollRun planRun(YearMonth period) {
+        PayrollRun run = new PayrollRun();
+        run.setPeriod(toPeriod(period));
+        run.setChunkSize(chunkSize);
+        run.setTotalChunks(0);
+        run.setStartedAt(LocalDateTime.now());
+        run = runRepository.saveAndFlush(run); // Fails here if the month already has a run
+
+        int items = itemRepository.freezeActiveSchedules(run.getId(), chunkSize);
+        int totalChunks = (items + chunkSize - 1) / chunkSize;
+        run.setTotalChunks(totalChunks);
+
+        List<PayrollRunChunk> chunks = new ArrayList<>(totalChunks);
+        for (int i = 0; i < totalChunks; i++) {
+            PayrollRunChunk chunk = new PayrollRunChunk();
+            chunk.setRunId(run.getId());
+            chunk.setChunkIndex(i);
+            chunks.add(chunk);
+        }
+        chunkRepository.saveAll(chunks);
+        return run;
+    }
+
+    /**
+     * Queues the pending chunks of a run on the worker pool, unless this instance is already paying it.
+     */
+    private void resumeRun(PayrollRun run) {
+        List<PayrollRunChunk> pending = chunkRepository.findByRunIdAndStatusOrderByChunkIndex(run.getId(), PayrollRunChunk.Status.PENDING);
+        AtomicInteger remaining = new AtomicInteger(pending.size());
+        if (pending.isEmpty()) {
+            finishRun(run);
+            return;
+        }
+        if (runsInProgress.putIfAbsent(run.getId(), remaining) != null) {
+            return;
+        }
+        for (PayrollRunChunk chunk : pending) {
+            workers.execute(() -> {
+                try {
+                    payChunk(run, chunk);
+                } catch (RuntimeException e) {
+                    // Stays PENDING and is retried on the next tick
+                    logger.error("Payroll run {} chunk {} failed: {}", run.getId(), chunk.getChunkIndex(), e.getMessage(), e);
+                } finally {
+                    if (remaining.decrementAndGet() == 0) {
+                        runsInProgress.remove(run.getId());
+                        finishRun(run);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Pays the frozen items of one chunk and checkpoints it in the same transaction.
+     */
+    private void payChunk(PayrollRun run, PayrollRunChunk chunk) {
+        YearMonth period = YearMonth.of(run.getPeriod() / 100, run.getPeriod() % 100);
+        transactionTemplate.executeWithoutResult(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            SortedMap<Long, Double> amountsByUserId = new TreeMap<>();
+            List<LedgerBatchWriter.Row> rows = new ArrayList<>();
+            double amount = 0;
+            for (Object[] item : itemRepository.findChunk(run.getId(), chunk.getChunkIndex())) {
+                Long userId = (Long) item[0];
+                double monthlyAmount = (Double) item[2];
+                String description = item[3] != null ? (String) item[3] : "Monthly salary " + period;
+                amountsByUserId.put(userId, monthlyAmount);
+                rows.add(new LedgerBatchWriter.Row((Long) item[1], userId, monthlyAmount, TransactionType.SALARY, now, description));
+                amount += monthlyAmount;
+            }
+
+            // Checkpoint first: if the chunk is already COMPLETED, pay nothing
+            if (chunkRepository.markCompleted(run.getId(), chunk.getChunkIndex(), rows.size(), amount, now) == 0) {
+                logger.info("Payroll run {} chunk {} was already paid, skipping", run.getId(), chunk.getChunkIndex());
+                return;
+            }
+            ledgerBatchWriter.incrementBalances(amountsByUserId);
+            ledgerBatchWriter.insertTransactions(rows);
+        });
+        logger.debug("Payroll run {} chunk {} paid", run.getId(), chunk.getChunkIndex());
+    }
+
+    private void finishRun(PayrollRun run) {
+        long completedChunks = (Long) chunkRepository.sumCompleted(run.getId()).get(0)[0];
+        if (completedChunks < run.getTotalChunks()) {
+            return; // Some chunks failed; resumed on the next tick
+        }
+        Integer updated = transactionTemplate.execute(status -> runRepository.markCompleted(run.getId(), LocalDateTime.now()));
+        if (updated != null && updated > 0) {
+            logger.info("Payroll run {} completed: {}", run.getId(), getRun(run.getId()));
+        }
+    }
+
+    private PayrollRunDTO convertToDto(PayrollRun run) {
+        Object[] progress = chunkRepository.sumCompleted(run.getId()).get(0);
+        long completedChunks = ((Number) progress[0]).longValue();
+        long paidCount = ((Number) progress[1]).longValue();
+        double totalAmount = ((Number) progress[2]).doubleValue();
+
+        LocalDateTime end = run.getFinishedAt() != null ? run.getFinishedAt() : LocalDateTime.now();
+        double seconds = Math.max(0.001, Duration.between(run.getStartedAt(), end).toMillis() / 1000.0);
+        double percentComplete = run.getTotalChunks() == 0 ? 100.0 : completedChunks * 100.0 / run.getTotalChunks();
+        return new PayrollRunDTO(run.getId(), run.getPeriod() / 100, run.getPeriod() % 100, run.getStatus(), run.getTotalChunks(),
+                completedChunks, percentComplete, paidCount, totalAmount, run.getStartedAt(), run.getFinishedAt(), paidCount / seconds);
+    }
+
+    private SalaryScheduleDTO convertToDto(SalarySchedule schedule) {
+        return new SalaryScheduleDTO(schedule.getUserId(), schedule.getUser().getUsername(), schedule.getMonthlyAmount(),
+                schedule.getDescription(), schedule.getActive(), schedule.getUpdatedAt());
+    }
+
+    private static int toPeriod(YearMonth yearMonth) {
+        return yearMonth.getYear() * 100 + yearMonth.getMonthValue();
+    }
+}
@@ -0,0 +1,184 @@
+package com.au.cl.service;
+
+import com.au.cl.util.BloomFilter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory set of refresh token ids (jti) that were already used or revoked, checked on every refresh
+ * without a database hit.
+ *
+ * Ids are grouped into hash-set buckets by the hour (configurable) in which their token expires, so whole
+ * buckets are dropped once every token in them has expired. A Bloom filter in front answers the common
+ * "never seen" case without touching the buckets; it is rebuilt from the remaining buckets after each sweep.
+ * The store is written to a small snapshot file periodically and on shutdown, and reloaded at startup.
+ */
+@Service
+public class RefreshTokenRevocationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RefreshTokenRevocationService.class);
+
+    private final long bucketSeconds;
+    private final long expectedEntries;
+    private final Path snapshotPath;
+
+    // Bucket index (token expiry epoch second / bucketSeconds) -> revoked token ids expiring in that bucket
+    private final ConcurrentNavigableMap<Long, Set<String>> buckets = new ConcurrentSkipListMap<>();
+    private volatile BloomFilter bloomFilter;
+
+    // Revocations hold the read lock so they can run concurrently; rebuilding the Bloom filter takes the
+    // write lock so no id can be added to the old filter after its replacement was built.
+    private final ReadWriteLock bloomLock = new ReentrantReadWriteLock();
+
+    public RefreshTokenRevocationService(@Value("${auth.refresh.revocation.bucket-seconds:3600}") long bucketSeconds,
+                                         @Value("${auth.refresh.revocation.expected-entries:100000}") long expectedEntries,
+                                         @Value("${auth.refresh.revocation.snapshot-path:data/refresh-token-revocations.snapshot}") String snapshotPath) {
+        this.bucketSeconds = bucketSeconds;
+        this.expectedEntries = expectedEntries;
+        this.snapshotPath = Paths.get(snapshotPath);
+        this.bloomFilter = new BloomFilter(expectedEntries, 0.01);
+    }
+
+    /**
+     * Marks a refresh token id as used, unless it already was. This is the atomic check-and-set used for rotation:
+     * of two concurrent refreshes with the same token, exactly one gets true.
+     * @param tokenId The jti of the refresh token.
+     * @param expiresAt The expiry of the refresh token; the id is forgotten after that.
+     * @return True if the id was not revoked before and is now, false if it had already been used or revoked.
+     */
+    public boolean revokeIfAbsent(String tokenId, Instant expiresAt) {
+        if (!expiresAt.isAfter(Instant.now())) {
+            return false; // An expired token is never valid; nothing to remember
+        }
+        bloomLock.readLock().lock();
+        try {
+            boolean added = buckets.computeIfAbsent(bucketOf(expiresAt), b -> ConcurrentHashMap.newKeySet()).add(tokenId);
+            if (added) {
+                bloomFilter.add(tokenId);
+            }
+            return added;
+        } finally {
+            bloomLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Checks if a refresh token id was used or revoked.
+     * @param tokenId The jti of the refresh token.
+     * @return True if the id is in the revocation set.
+     */
+    public boolean isRevoked(String tokenId) {
+        if (!bloomFilter.mightContain(tokenId)) {
+            return false;
+        }
+        for (Set<String> bucket : buckets.values()) {
+            if (bucket.contains(tokenId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drops buckets whose tokens have all expired, rebuilds the Bloom filter and writes a snapshot.
+     */
+    @Scheduled(fixedDelayString = "${auth.refresh.revocation.sweep-interval-ms:60000}")
+    public void sweepAndSnapshot() {
+        long firstLiveBucket = Instant.now().getEpochSecond() / bucketSeconds;
+        Map<Long, Set<String>> expired = buckets.headMap(firstLiveBucket);
+        if (!expired.isEmpty()) {
+            expired.clear();
+            rebuildBloomFilter();
+        }
+        writeSnapshot();
+    }
+
+    @PostConstruct
+    public void loadSnapshot() {
+        if (!Files.exists(snapshotPath)) {
+            return;
+        }
+        long now = Instant.now().getEpochSecond();
+        int loaded = 0;
+        try {
+            List<String> lines = Files.readAllLines(snapshotPath, StandardCharsets.UTF_8);
+            for (String line : lines) {
+                int separator = line.indexOf(' ');
+                if (separator <= 0) {
+                    continue;
+                }
+                long expiresAt = Long.parseLong(line.substring(0, separator));
+                if (expiresAt > now && revokeIfAbsent(line.substring(separator + 1), Instant.ofEpochSecond(expiresAt))) {
+                    loaded++;
+                }
+            }
+            logger.info("Loaded {} revoked refresh token ids from {}", loaded, snapshotPath);
+        } catch (IOException | NumberFormatException e) {
+            logger.error("Could not read refresh token revocation snapshot {}: {}", snapshotPath, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes the revocation set to the snapshot file through a temporary file.
+     * Synchronized because the scheduled sweep and shutdown can both write it at once.
+     */
+    @PreDestroy
+    public synchronized void writeSnapshot() {
+        Path tempFile = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try {
+            if (snapshotPath.getParent() != null) {
+                Files.createDirectories(snapshotPath.getParent());
+            }
+            try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                for (Map.Entry<Long, Set<String>> bucket : buckets.entrySet()) {
+                    long bucketEnd = (bucket.getKey() + 1) * bucketSeconds; // Latest possible expiry within the bucket
+                    for (String tokenId : bucket.getValue()) {
+                        writer.write(bucketEnd + " " + tokenId);
+                        writer.newLine();
+                    }
+                }
+            }
+            Files.move(tempFile, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.error("Could not write refresh token revocation snapshot {}: {}", snapshotPath, e.getMessage(), e);
+        }
+    }
+
+    private void rebuildBloomFilter() {
+        bloomLock.writeLock().lock();
+        try {
+            long size = buckets.values().stream().mapToLong(Set::size).sum();
+            BloomFilter rebuilt = new BloomFilter(Math.max(expectedEntries, size * 2), 0.01);
+            buckets.values().forEach(bucket -> bucket.forEach(rebuilt::add));
+            bloomFilter = rebuilt;
+        } finally {
+            bloomLock.writeLock().unlock();
+        }
+    }
+
+    private long bucketOf(Instant expiresAt) {
+        return expiresAt.getEpochSecond() / bucketSeconds;
+    }
+}
@@ -0,0 +1,75 @@
+package com.au.cl.service;
+
+import com.au.cl.model.User;
+import com.au.cl.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ * Keeps an in-memory view of each user's security version for stateless JWT authentication.
+ * A version is read from the database when a user is not cached and is updated in place whenever
+ * UserService changes a password, role, username or alive status. Disabled users are stored with a
+ * version no token can carry, so their tokens always fall back to the database path.
+ *
+ * Note: the view is per instance. With several instances behind a load balancer, a change made on one
+ * instance reaches the others when their entry expires, so entries live at most
+ * security.version-cache.ttl-seconds after they were loaded or changed.
+ */
+@Service
+public class SecurityVersionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SecurityVersionService.class);
+
+    private static final long DISABLED = -1L; // Never issued in a token, so it never matches
+
+    private final UserRepository userRepository;
+    private final Cache<Long, Long> versions; // User id -> effective security version
+
+    public SecurityVersionService(UserRepository userRepository,
+                                  @Value("${security.version-cache.max-size:100000}") long maxSize,
+                                  @Value("${security.version-cache.ttl-seconds:30}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.versions = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    /**
+     * Checks if the security version embedded in a token is still the user's current version.
+     * @param userId The user id from the token.
+     * @param tokenVersion The security version from the token.
+     * @return True if the token can be trusted without loading the user from the database.
+     */
+    public boolean isCurrent(Long userId, Long tokenVersion) {
+        if (userId == null || tokenVersion == null) {
+            return false;
+        }
+        // Not cached (or expired) on this instance: one lookup, then served from memory until the entry expires
+        Long current = versions.get(userId, id -> userRepository.findById(id)
+                .map(this::effectiveVersion)
+                .orElse(DISABLED));
+        return current.equals(tokenVersion);
+    }
+
+    /**
+     * Records the latest security version of a user after it was changed.
+     * Called before the surrounding transaction commits; if it rolls back, tokens simply take the
+     * database path until the entry expires and is reloaded, which is the safe direction.
+     * @param user The user whose security-relevant fields were changed.
+     */
+    public void recordChange(User user) {
+        versions.put(user.getId(), effectiveVersion(user));
+        logger.debug("Security version for user {} is now {}", user.getId(), user.getSecurityVersion());
+    }
+
+    private long effectiveVersion(User user) {
+        return Boolean.TRUE.equals(user.getAlive()) ? user.getSecurityVersion() : DISABLED;
+    }
+}
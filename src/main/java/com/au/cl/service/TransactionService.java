@@ -1,10 +1,18 @@
 package com.au.cl.service;
 
+import com.au.cl.dto.BulkPaymentResult;
+import com.au.cl.dto.CursorPage;
+import com.au.cl.dto.MonthlyEarningsDTO;
 import com.au.cl.dto.PaymentRequest;
+import com.au.cl.dto.PaymentTotalsDTO;
 import com.au.cl.dto.TransactionDTO;
+import com.au.cl.dto.TransferRequest;
+import com.au.cl.model.Role;
 import com.au.cl.model.Transaction;
 import com.au.cl.model.Transaction.TransactionType;
 import com.au.cl.model.User;
+import com.au.cl.repository.LedgerBatchWriter;
+import com.au.cl.repository.LedgerDailyRollupRepository;
 import com.au.cl.repository.TransactionRepository;
 import com.au.cl.repository.UserRepository;
 import jakarta.transaction.Transactional;
@@ -12,28 +20,53 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 @Service
 public class TransactionService {
 
     private static final Logger logger = LoggerFactory.getLogger(TransactionService.class);
+    private static final int MAX_PAGE_SIZE = 200;
 
     private final TransactionRepository transactionRepository;
     private final UserRepository userRepository;
+    private final LedgerBatchWriter ledgerBatchWriter;
+    private final LedgerDailyRollupRepository rollupRepository;
+    private final PaymentTotalsIndex paymentTotalsIndex;
 
-    public TransactionService(TransactionRepository transactionRepository, UserRepository userRepository) {
+    public TransactionService(TransactionRepository transactionRepository, UserRepository userRepository,
+                              LedgerBatchWriter ledgerBatchWriter, LedgerDailyRollupRepository rollupRepository,
+                              PaymentTotalsIndex paymentTotalsIndex) {
         this.transactionRepository = transactionRepository;
         this.userRepository = userRepository;
+        this.ledgerBatchWriter = ledgerBatchWriter;
+        this.rollupRepository = rollupRepository;
+        this.paymentTotalsIndex = paymentTotalsIndex;
     }
 
     /**
      * Handles sending money/salary from one user to another.
      * Updates balances and records the transaction.
+     * The receiver is credited with a single atomic UPDATE (balance = balance + amount) instead of
+     * read-modify-write on the entity, so concurrent payments to the same user cannot overwrite each other.
+     * The UPDATE runs before the transaction row is inserted: the insert's foreign key check takes a shared
+     * lock on the user row, and upgrading that to the UPDATE's exclusive lock could deadlock two payments.
      * @param sender The user initiating the transaction (Admin).
      * @param request The payment request details.
      * @return The created TransactionDTO.
@@ -48,24 +81,128 @@ public class TransactionService {
         User receiver = userRepository.findByUsername(request.getRecipientUsername())
                 .orElseThrow(() -> new IllegalArgumentException("Recipient user not found: " + request.getRecipientUsername()));
 
-        // Update balances (assuming sender is admin and doesn't have a balance deducted)
-        // If sender balance should be deducted, add logic here.
-        receiver.setBalance(receiver.getBalance() + request.getAmount());
-        userRepository.save(receiver); // Save updated receiver balance
+        // Credit the receiver (assuming sender is admin and doesn't have a balance deducted)
+        userRepository.incrementBalance(receiver.getId(), request.getAmount());
 
+        Transaction savedTransaction = recordTransaction(sender, receiver, request.getAmount(), request.getTransactionType(), request.getDescription());
+        logger.info("Payment of {} {} from {} to {} recorded successfully.",
+                request.getAmount(), request.getTransactionType(), sender.getUsername(), receiver.getUsername());
+
+        return convertToDto(savedTransaction);
+    }
+
+    /**
+     * Pays many users at once (e.g. monthly salaries), all or nothing.
+     * Recipients are resolved with one IN query, balances are credited with one JDBC batch of atomic increments
+     * (one per recipient, in ascending id order) and the transaction rows are inserted with one JDBC batch.
+     * If any recipient is unknown, nothing is paid and the result says which entries were rejected.
+     * @param sender The user initiating the payout (Admin).
+     * @param payments The payments to make.
+     * @return The BulkPaymentResult with one entry per payment, in request order.
+     * @throws IllegalArgumentException if an amount is invalid.
+     */
+    @Transactional
+    public BulkPaymentResult sendBulkPayment(User sender, List<PaymentRequest> payments) {
+        Set<String> usernames = new HashSet<>();
+        for (PaymentRequest payment : payments) {
+            if (payment.getAmount() == null || payment.getAmount() <= 0) {
+                throw new IllegalArgumentException("Amount must be positive.");
+            }
+            usernames.add(payment.getRecipientUsername());
+        }
+        Map<String, Long> userIdsByUsername = new HashMap<>();
+        userRepository.findByUsernameIn(usernames).forEach(user -> userIdsByUsername.put(user.getUsername(), user.getId()));
+
+        boolean allKnown = userIdsByUsername.size() == usernames.size();
+        List<BulkPaymentResult.EntryResult> results = new ArrayList<>(payments.size());
+        SortedMap<Long, Double> amountsByUserId = new TreeMap<>();
+        List<LedgerBatchWriter.Row> rows = new ArrayList<>(payments.size());
+        LocalDateTime now = LocalDateTime.now();
+        double totalAmount = 0;
+        for (int i = 0; i < payments.size(); i++) {
+            PaymentRequest payment = payments.get(i);
+            Long receiverId = userIdsByUsername.get(payment.getRecipientUsername());
+            BulkPaymentResult.Outcome outcome = receiverId == null ? BulkPaymentResult.Outcome.UNKNOWN_RECIPIENT
+                    : allKnown ? BulkPaymentResult.Outcome.PAID : BulkPaymentResult.Outcome.NOT_APPLIED;
+            results.add(new BulkPaymentResult.EntryResult(i, payment.getRecipientUsername(), payment.getAmount(), outcome));
+            if (outcome == BulkPaymentResult.Outcome.PAID) {
+                amountsByUserId.merge(receiverId, payment.getAmount(), Double::sum);
+                rows.add(new LedgerBatchWriter.Row(sender.getId(), receiverId, payment.getAmount(), payment.getTransactionType(),
+                        now, payment.getDescription()));
+                totalAmount += payment.getAmount();
+            }
+        }
+        if (!allKnown) {
+            logger.warn("Bulk payout by {} rejected: {} unknown recipients", sender.getUsername(), usernames.size() - userIdsByUsername.size());
+            return new BulkPaymentResult(false, 0, 0, results);
+        }
+
+        // Balances first: the transaction inserts' foreign key checks then find the rows already locked by us
+        ledgerBatchWriter.incrementBalances(amountsByUserId);
+        ledgerBatchWriter.insertTransactions(rows);
+        logger.info("Bulk payout of {} payments ({} total) to {} users by {} recorded successfully.",
+                rows.size(), totalAmount, amountsByUserId.size(), sender.getUsername());
+        return new BulkPaymentResult(true, rows.size(), totalAmount, results);
+    }
+
+    /**
+     * Transfers money from one Avenger to another: debits the sender, credits the receiver and records
+     * a SEND_MONEY transaction, all in one database transaction.
+     * Both balances change through single UPDATE statements (the debit only if the balance covers it), taken in
+     * ascending user id order, so two opposite transfers always lock the same row first and cannot deadlock.
+     * No entity is locked or read-modify-written, which keeps lock hold times short under heavy transfer load.
+     * @param sender The Avenger sending the money.
+     * @param request The transfer details.
+     * @return The created TransactionDTO.
+     * @throws IllegalArgumentException if the recipient is not an Avenger, the amount is invalid or the balance is too low.
+     */
+    @Transactional
+    public TransactionDTO transfer(User sender, TransferRequest request) {
+        if (request.getAmount() <= 0) {
+            throw new IllegalArgumentException("Amount must be positive.");
+        }
+        User receiver = userRepository.findByUsername(request.getRecipientUsername())
+                .filter(user -> user.getRole() == Role.AVENGER)
+                .orElseThrow(() -> new IllegalArgumentException("Recipient Avenger not found: " + request.getRecipientUsername()));
+        if (receiver.getId().equals(sender.getId())) {
+            throw new IllegalArgumentException("You cannot transfer money to yourself.");
+        }
+
+        // Lock order: lower user id first
+        if (sender.getId() < receiver.getId()) {
+            debit(sender, request.getAmount());
+            userRepository.incrementBalance(receiver.getId(), request.getAmount());
+        } else {
+            userRepository.incrementBalance(receiver.getId(), request.getAmount());
+            debit(sender, request.getAmount()); // Throwing rolls the credit back
+        }
+
+        Transaction savedTransaction = recordTransaction(userRepository.getReferenceById(sender.getId()), receiver,
+                request.getAmount(), TransactionType.SEND_MONEY, request.getDescription());
+        logger.info("Transfer of {} from {} to {} recorded successfully.", request.getAmount(), sender.getUsername(), receiver.getUsername());
+
+        // The transaction's sender is an uninitialized reference; reading its username would load it
+        return convertToDto(savedTransaction, sender.getUsername(), receiver.getUsername());
+    }
+
+    private void debit(User sender, double amount) {
+        if (userRepository.debitIfSufficient(sender.getId(), amount) == 0) {
+            throw new IllegalArgumentException("Insufficient balance.");
+        }
+    }
+
+    private Transaction recordTransaction(User sender, User receiver, double amount, TransactionType type, String description) {
         Transaction transaction = new Transaction();
         transaction.setSender(sender);
         transaction.setReceiver(receiver);
-        transaction.setAmount(request.getAmount());
-        transaction.setTransactionType(request.getTransactionType());
-        transaction.setDescription(request.getDescription());
+        transaction.setAmount(amount);
+        transaction.setTransactionType(type);
+        transaction.setDescription(description);
         transaction.setTransactionDate(LocalDateTime.now()); // Ensure timestamp is set
-
         Transaction savedTransaction = transactionRepository.save(transaction);
-        logger.info("Payment of {} {} from {} to {} recorded successfully. Receiver new balance: {}",
-                request.getAmount(), request.getTransactionType(), sender.getUsername(), receiver.getUsername(), receiver.getBalance());
-
-        return convertToDto(savedTransaction);
+        ledgerBatchWriter.upsertDailyRollups(List.of(new LedgerBatchWriter.Row(sender.getId(), receiver.getId(), amount, type,
+                savedTransaction.getTransactionDate(), description)));
+        return savedTransaction;
     }
 
     /**
@@ -80,16 +217,35 @@ public class TransactionService {
 
     /**
      * Calculates the total amount of transactions of a specific type within a date range.
+     * Read from the in-memory PaymentTotalsIndex, so whole days are counted: the range is widened to the days it touches.
      * @param type The type of transaction (e.g., SALARY).
      * @param startDate The start date (inclusive).
      * @param endDate The end date (inclusive).
      * @return The total amount.
      */
     public double getTotalPaymentsBetween(TransactionType type, LocalDateTime startDate, LocalDateTime endDate) {
-        return transactionRepository.findByTransactionTypeAndTransactionDateBetween(type, startDate, endDate)
-                .stream()
-                .mapToDouble(Transaction::getAmount)
-                .sum();
+        return paymentTotalsIndex.sum(type, startDate.toLocalDate(), endDate.toLocalDate());
+    }
+
+    /**
+     * Calculates the total amount paid per transaction type on the days from fromDate to toDate, without a database query.
+     * @param fromDate The first day (inclusive).
+     * @param toDate The last day (inclusive).
+     * @return PaymentTotalsDTO with the total per type.
+     * @throws IllegalArgumentException if fromDate is after toDate.
+     */
+    public PaymentTotalsDTO getPaymentTotals(LocalDate fromDate, LocalDate toDate) {
+        if (fromDate.isAfter(toDate)) {
+            throw new IllegalArgumentException("The start date must not be after the end date.");
+        }
+        Map<TransactionType, Double> totals = new EnumMap<>(TransactionType.class);
+        double total = 0;
+        for (TransactionType type : TransactionType.values()) {
+            double amount = paymentTotalsIndex.sum(type, fromDate, toDate);
+            totals.put(type, amount);
+            total += amount;
+        }
+        return new PaymentTotalsDTO(fromDate, toDate, totals, total);
     }
 
     /**
@@ -104,6 +260,31 @@ public class TransactionService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Retrieves one page of an Avenger's transaction history (sent or received), newest first, using keyset
+     * pagination on (transaction_date, id) so later pages cost the same as the first. Usernames come from the
+     * same query, so no sender or receiver is loaded.
+     * @param avengerUser The Avenger user.
+     * @param cursor The nextCursor of the previous page, or null for the first page.
+     * @param limit The page size (capped at MAX_PAGE_SIZE).
+     * @return The CursorPage of TransactionDTOs.
+     * @throws IllegalArgumentException if the cursor is malformed.
+     */
+    public CursorPage<TransactionDTO> getTransactionHistoryPage(User avengerUser, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        HistoryCursor after = cursor == null || cursor.isBlank() ? null : HistoryCursor.decode(cursor);
+
+        // One extra row tells whether there is a next page
+        List<TransactionDTO> rows = transactionRepository.findHistoryPage(avengerUser.getId(),
+                after == null ? null : after.transactionDate(), after == null ? null : after.id(), pageSize + 1);
+        if (rows.size() <= pageSize) {
+            return new CursorPage<>(rows, null);
+        }
+        List<TransactionDTO> items = new ArrayList<>(rows.subList(0, pageSize));
+        TransactionDTO last = items.get(pageSize - 1);
+        return new CursorPage<>(items, new HistoryCursor(last.getTransactionDate(), last.getId()).encode());
+    }
+
     /**
      * Retrieves the last transaction for a specific Avenger.
      * @param avengerUser The Avenger user.
@@ -118,16 +299,33 @@ public class TransactionService {
     /**
      * Calculates total earnings for an Avenger within a given month.
      * Earnings are defined as transactions where the Avenger is the receiver.
+     * Read from the daily rollups, so whole days are counted.
      * @param avengerUser The Avenger user.
      * @param startOfMonth Start of the month.
      * @param endOfMonth End of the month.
      * @return Total amount received.
      */
     public double getMonthlyEarningsForAvenger(User avengerUser, LocalDateTime startOfMonth, LocalDateTime endOfMonth) {
-        return transactionRepository.findByReceiverAndTransactionDateBetween(avengerUser, startOfMonth, endOfMonth)
-                .stream()
-                .mapToDouble(Transaction::getAmount)
-                .sum();
+        return rollupRepository.sumAmountReceivedBetween(avengerUser.getId(), startOfMonth.toLocalDate(), endOfMonth.toLocalDate());
+    }
+
+    /**
+     * Calculates an Avenger's earnings for every month of a year with one grouped query.
+     * @param avengerUser The Avenger user.
+     * @param year The year.
+     * @return Twelve MonthlyEarningsDTOs in month order; months without payments have zero totals.
+     */
+    public List<MonthlyEarningsDTO> getYearlyEarningsForAvenger(User avengerUser, int year) {
+        List<MonthlyEarningsDTO> result = new ArrayList<>(12);
+        for (int month = 1; month <= 12; month++) {
+            result.add(new MonthlyEarningsDTO(year, month, 0, 0.0));
+        }
+        for (Object[] row : rollupRepository.sumAmountReceivedByMonth(avengerUser.getId(), LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 31))) {
+            MonthlyEarningsDTO earnings = result.get(((Number) row[0]).intValue() - 1);
+            earnings.setPaymentCount((Long) row[1]);
+            earnings.setTotalEarnings((Double) row[2]);
+        }
+        return result;
     }
 
     /**
@@ -136,14 +334,37 @@ public class TransactionService {
      * @return The corresponding TransactionDTO.
      */
     private TransactionDTO convertToDto(Transaction transaction) {
+        return convertToDto(transaction, transaction.getSender().getUsername(), transaction.getReceiver().getUsername());
+    }
+
+    private TransactionDTO convertToDto(Transaction transaction, String senderUsername, String receiverUsername) {
         TransactionDTO dto = new TransactionDTO();
         dto.setId(transaction.getId());
-        dto.setSenderUsername(transaction.getSender().getUsername());
-        dto.setReceiverUsername(transaction.getReceiver().getUsername());
+        dto.setSenderUsername(senderUsername);
+        dto.setReceiverUsername(receiverUsername);
         dto.setAmount(transaction.getAmount());
         dto.setTransactionType(transaction.getTransactionType());
         dto.setTransactionDate(transaction.getTransactionDate());
         dto.setDescription(transaction.getDescription());
         return dto;
     }
+
+    /**
+     * Position of the last row of a history page, sent to clients as an opaque URL-safe string.
+     */
+    private record HistoryCursor(LocalDateTime transactionDate, Long id) {
+        private String encode() {
+            String value = transactionDate + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private static HistoryCursor decode(String cursor) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+                return new HistoryCursor(LocalDateTime.parse(parts[0]), Long.valueOf(parts[1]));
+            } catch (IllegalArgumentException | DateTimeParseException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Invalid cursor.");
+            }
+        }
+    }
 }
@@ -2,25 +2,54 @@ package com.au.cl.service;
 
 import com.au.cl.model.User;
 import com.au.cl.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.util.Optional;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
 
 /**
  * Custom implementation of Spring Security's UserDetailsService.
  * This service is responsible for loading user-specific data during authentication.
+ * Loaded users are kept in a bounded, expiring in-process cache because JwtRequestFilter
+ * calls loadUserByUsername on every authenticated request.
+ * It also implements UserDetailsPasswordService, so Spring Security's DaoAuthenticationProvider
+ * can transparently re-hash a password whose stored hash uses an outdated BCrypt cost.
  */
 @Service
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserDetailsServiceImpl.class);
 
     private final UserRepository userRepository;
 
+    // Username -> User. Entries must be evicted through evict() whenever a cached field changes.
+    private final Cache<String, User> userCache;
+
     // Constructor injection for UserRepository
-    public UserDetailsServiceImpl(UserRepository userRepository) {
+    public UserDetailsServiceImpl(UserRepository userRepository,
+                                  @Value("${security.user-cache.max-size:1000}") long maxSize,
+                                  @Value("${security.user-cache.ttl-seconds:300}") long ttlSeconds) {
         this.userRepository = userRepository;
+        this.userCache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
     }
 
     /**
@@ -35,16 +64,70 @@ public class UserDetailsServiceImpl implements UserDetailsService {
      */
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        // Find the user by username in the database
-        Optional<User> userOptional = userRepository.findByUsername(username);
+        // Find the user in the cache, falling back to the database. Misses are not cached.
+        User user = userCache.get(username, key -> userRepository.findByUsername(key).orElse(null));
 
         // If the user is not found, throw UsernameNotFoundException
-        if (userOptional.isEmpty()) {
+        if (user == null) {
             throw new UsernameNotFoundException("User not found with username: " + username);
         }
 
         // Return the found User entity. Since com.au.cl.model.User now implements UserDetails,
         // it can be directly returned here.
-        return userOptional.get();
+        return user;
+    }
+
+    /**
+     * Stores an upgraded password hash after a successful login. Called by DaoAuthenticationProvider
+     * when PasswordEncoder#upgradeEncoding reports that the stored hash is weaker than the current cost.
+     * This is not a password change, so the user's security version is left untouched.
+     * @param user The authenticated user.
+     * @param newPassword The password re-encoded with the current cost.
+     * @return The user with the new password hash.
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        User authenticatedUser = (User) user;
+        userRepository.updatePassword(authenticatedUser.getId(), newPassword);
+        evict(authenticatedUser.getUsername());
+        authenticatedUser.setPassword(newPassword);
+        logger.info("Upgraded password hash of user {} to the current BCrypt cost", authenticatedUser.getUsername());
+        return authenticatedUser;
+    }
+
+    /**
+     * Evicts cached users, immediately and again once the surrounding transaction (if any) commits,
+     * so a concurrent request cannot re-cache the pre-commit state.
+     * Pass both the old and the new username when a user is renamed.
+     * @param usernames The usernames to evict; null values are ignored.
+     */
+    public void evict(String... usernames) {
+        List<String> keys = Arrays.stream(usernames).filter(Objects::nonNull).toList();
+        userCache.invalidateAll(keys);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    userCache.invalidateAll(keys);
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns hit, miss and eviction statistics for the user cache.
+     * @return A snapshot of the cache statistics.
+     */
+    public CacheStats getCacheStats() {
+        return userCache.stats();
+    }
+
+    /**
+     * Returns the approximate number of users currently cached.
+     * @return The estimated cache size.
+     */
+    public long getCacheSize() {
+        return userCache.estimatedSize();
     }
 }
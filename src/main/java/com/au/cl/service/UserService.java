@@ -2,11 +2,11 @@ package com.au.cl.service;
 
 import com.au.cl.dto.ProfileUpdateRequest; // Import new DTO
 import com.au.cl.dto.UserDTO;
+import com.au.cl.model.Role;
 import com.au.cl.model.User;
 import com.au.cl.repository.UserRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import jakarta.transaction.Transactional;
 
@@ -18,11 +18,28 @@ public class UserService { // This is a new service for general user business lo
     private static final Logger logger = LoggerFactory.getLogger(UserService.class);
 
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
+    private final SecurityVersionService securityVersionService;
+    private final UserDetailsServiceImpl userDetailsService;
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository, PasswordHashingService passwordHashingService,
+                       SecurityVersionService securityVersionService, UserDetailsServiceImpl userDetailsService) {
         this.userRepository = userRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingService = passwordHashingService;
+        this.securityVersionService = securityVersionService;
+        this.userDetailsService = userDetailsService;
+    }
+
+    /**
+     * Returns a freshly loaded User for the authenticated principal.
+     * The principal is either built from JWT claims (stateless mode, identity fields only) or served
+     * from the user cache, so fields such as balance may be missing or stale; reload before reading them.
+     * @param principal The authenticated user.
+     * @return The full, current User entity.
+     * @throws IllegalArgumentException if the user no longer exists.
+     */
+    public User getFullUser(User principal) {
+        return findUser(principal.getId());
     }
 
     /**
@@ -36,13 +53,17 @@ public class UserService { // This is a new service for general user business lo
 
     /**
      * Updates an Avenger's profile.
-     * @param user The authenticated Avenger user.
+     * @param principal The authenticated Avenger user.
      * @param request The profile update request DTO.
      * @return The updated UserDTO.
      * @throws IllegalArgumentException if the email is already taken by another user.
      */
     @Transactional
-    public UserDTO updateAvengerProfile(User user, ProfileUpdateRequest request) {
+    public UserDTO updateAvengerProfile(User principal, ProfileUpdateRequest request) {
+        // Work on a freshly loaded entity so a claims-only principal never overwrites other columns
+        User user = findUser(principal.getId());
+        String previousUsername = user.getUsername();
+
         // Check if email is being changed and if new email is already taken by another user
         if (!user.getEmail().equals(request.getEmail())) {
             if (userRepository.existsByEmail(request.getEmail())) {
@@ -61,23 +82,86 @@ public class UserService { // This is a new service for general user business lo
         // user.setBio(request.getBio());
         // user.setSkills(request.getSkills());
 
+        if (!previousUsername.equals(user.getUsername())) {
+            bumpSecurityVersion(user); // The token subject no longer matches the user
+        }
+
         User updatedUser = userRepository.save(user);
+        securityVersionService.recordChange(updatedUser);
+        userDetailsService.evict(previousUsername, updatedUser.getUsername());
         logger.info("Avenger profile updated for user: {}", updatedUser.getUsername());
         return getUserDTO(updatedUser);
     }
 
     /**
      * Changes the password for a user.
-     * @param user The authenticated user.
+     * @param principal The authenticated user.
      * @param newPassword The new password.
+     * @throws java.util.concurrent.RejectedExecutionException if the password hashing pool is saturated.
      */
     @Transactional
-    public void changePassword(User user, String newPassword) {
-        user.setPassword(passwordEncoder.encode(newPassword));
+    public void changePassword(User principal, String newPassword) {
+        User user = findUser(principal.getId());
+        user.setPassword(passwordHashingService.encode(newPassword)); // Hashed on the bounded hashing pool
+        bumpSecurityVersion(user);
         userRepository.save(user);
+        securityVersionService.recordChange(user);
+        userDetailsService.evict(user.getUsername());
         logger.info("Password changed for user: {}", user.getUsername());
     }
 
+    /**
+     * Sets the alive status of a user (admin operation).
+     * A user who is not alive is disabled and can no longer authenticate.
+     * @param userId The id of the user to update.
+     * @param alive The new alive status.
+     * @return The updated UserDTO.
+     * @throws IllegalArgumentException if the user is not found.
+     */
+    @Transactional
+    public UserDTO updateUserStatus(Long userId, boolean alive) {
+        User user = findUser(userId);
+        if (!user.getAlive().equals(alive)) {
+            user.setAlive(alive);
+            bumpSecurityVersion(user);
+            userRepository.save(user);
+            securityVersionService.recordChange(user);
+            userDetailsService.evict(user.getUsername());
+            logger.info("Alive status of user {} set to {}", user.getUsername(), alive);
+        }
+        return getUserDTO(user);
+    }
+
+    /**
+     * Changes the role of a user (admin operation).
+     * @param userId The id of the user to update.
+     * @param role The new role.
+     * @return The updated UserDTO.
+     * @throws IllegalArgumentException if the user is not found.
+     */
+    @Transactional
+    public UserDTO updateUserRole(Long userId, Role role) {
+        User user = findUser(userId);
+        if (user.getRole() != role) {
+            user.setRole(role);
+            bumpSecurityVersion(user);
+            userRepository.save(user);
+            securityVersionService.recordChange(user);
+            userDetailsService.evict(user.getUsername());
+            logger.info("Role of user {} changed to {}", user.getUsername(), role);
+        }
+        return getUserDTO(user);
+    }
+
+    private User findUser(Long userId) {
+        return userRepository.findById(userId)
+                .orElseThrow(() -> new IllegalArgumentException("User not found with id: " + userId));
+    }
+
+    private void bumpSecurityVersion(User user) {
+        user.setSecurityVersion(user.getSecurityVersion() + 1);
+    }
+
     // You might also want a method to toggle 2FA status if implemented
     // public void toggleTwoFactorAuthentication(User user, boolean enable) { ... }
 }
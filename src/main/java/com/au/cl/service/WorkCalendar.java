@@ -0,0 +1,216 @@
+package com.au.cl.service;
+
+import com.au.cl.event.WorkCalendarChangedEvent;
+import com.au.cl.model.Holiday;
+import com.au.cl.repository.HolidayRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.Year;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Single source of truth for which days count as workdays (attendance stats, absences, payroll proration).
+ * Weekend days come from work-calendar.weekend-days; holidays from work-calendar.holidays (comma-separated
+ * ISO dates) plus the holidays table, which admins edit at runtime.
+ *
+ * The calendar is an immutable snapshot holding, per year, a workday bitmap (bit day - 1) and a workday count
+ * for every month. The previous, current and next year are computed when the snapshot is built, other years
+ * within CACHED_YEARS of the current one once on first use; years further away, which only odd requests ask
+ * for, are computed on every use so that callers cannot grow the snapshot without limit. Lookups are array reads without allocation. When holidays change, a new snapshot is built
+ * and swapped in atomically, and a WorkCalendarChangedEvent is published. Holidays edited through another
+ * instance are picked up by reloading the stored holidays every work-calendar.reload-ms.
+ */
+@Component
+public class WorkCalendar {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkCalendar.class);
+    private static final int CACHED_YEARS = 10;
+
+    private final HolidayRepository holidayRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Set<DayOfWeek> weekendDays;
+    private final Set<LocalDate> configuredHolidays;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+    public WorkCalendar(HolidayRepository holidayRepository, ApplicationEventPublisher eventPublisher,
+                        @Value("${work-calendar.weekend-days:SATURDAY,SUNDAY}") List<DayOfWeek> weekendDays,
+                        @Value("${work-calendar.holidays:}") List<String> configuredHolidays) {
+        this.holidayRepository = holidayRepository;
+        this.eventPublisher = eventPublisher;
+        this.weekendDays = Set.copyOf(weekendDays);
+        this.configuredHolidays = new HashSet<>();
+        for (String date : configuredHolidays) {
+            if (date.isBlank()) {
+                continue;
+            }
+            try {
+                this.configuredHolidays.add(LocalDate.parse(date.trim()));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid date in work-calendar.holidays: " + date, e);
+            }
+        }
+        this.snapshot.set(new Snapshot(this.weekendDays, Set.copyOf(this.configuredHolidays)));
+    }
+
+    /**
+     * Loads the stored holidays, then reloads them periodically.
+     */
+    @PostConstruct
+    @Scheduled(initialDelayString = "${work-calendar.reload-ms:300000}", fixedDelayString = "${work-calendar.reload-ms:300000}")
+    public void load() {
+        try {
+            swap();
+        } catch (DataAccessException e) {
+            logger.warn("Could not load holidays, using configured holidays only: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the workday bitmap of a month.
+     * @param yearMonth The month.
+     * @return Bitmap with bit (day - 1) set for every workday.
+     */
+    public int workdayMask(YearMonth yearMonth) {
+        return snapshot.get().year(yearMonth.getYear()).masks()[yearMonth.getMonthValue() - 1];
+    }
+
+    /**
+     * Returns the number of workdays of a month.
+     * @param yearMonth The month.
+     * @return The workday count.
+     */
+    public int workdayCount(YearMonth yearMonth) {
+        return snapshot.get().year(yearMonth.getYear()).counts()[yearMonth.getMonthValue() - 1];
+    }
+
+    public boolean isWorkday(LocalDate date) {
+        return (workdayMask(YearMonth.from(date)) & 1 << (date.getDayOfMonth() - 1)) != 0;
+    }
+
+    public List<Holiday> getHolidays() {
+        return holidayRepository.findAllByOrderByDateAsc();
+    }
+
+    /**
+     * Adds or renames a holiday; the new calendar is used once the change commits.
+     * @param date The day.
+     * @param name The holiday's name.
+     * @return The saved Holiday.
+     */
+    @Transactional
+    public Holiday addHoliday(LocalDate date, String name) {
+        Holiday holiday = holidayRepository.save(new Holiday(date, name));
+        swapAfterCommit();
+        logger.info("Holiday {} ({}) added to the work calendar", date, name);
+        return holiday;
+    }
+
+    /**
+     * Removes a holiday; the new calendar is used once the change commits.
+     * @param date The day.
+     * @throws IllegalArgumentException if there is no stored holiday on that day.
+     */
+    @Transactional
+    public void removeHoliday(LocalDate date) {
+        if (!holidayRepository.existsById(date)) {
+            throw new IllegalArgumentException("No holiday on " + date + ".");
+        }
+        holidayRepository.deleteById(date);
+        swapAfterCommit();
+        logger.info("Holiday {} removed from the work calendar", date);
+    }
+
+    private void swapAfterCommit() {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                swap();
+            }
+        });
+    }
+
+    /**
+     * Builds a snapshot from the configured and stored holidays and makes it current, unless the holidays
+     * are unchanged.
+     */
+    private synchronized void swap() {
+        Set<LocalDate> holidays = new HashSet<>(configuredHolidays);
+        holidayRepository.findAll().forEach(holiday -> holidays.add(holiday.getDate()));
+        if (holidays.equals(snapshot.get().holidays)) {
+            return; // Periodic reloads must not drop the caches built on the calendar
+        }
+        snapshot.set(new Snapshot(weekendDays, Set.copyOf(holidays)));
+        eventPublisher.publishEvent(new WorkCalendarChangedEvent(holidays.size()));
+        logger.info("Work calendar loaded with {} holidays", holidays.size());
+    }
+
+    /**
+     * Immutable workday data for one set of holidays.
+     */
+    private static final class Snapshot {
+        private final Set<DayOfWeek> weekendDays;
+        private final Set<LocalDate> holidays;
+        private final Map<Integer, YearCalendar> years = new ConcurrentHashMap<>();
+        private final int currentYear;
+
+        private Snapshot(Set<DayOfWeek> weekendDays, Set<LocalDate> holidays) {
+            this.weekendDays = weekendDays;
+            this.holidays = holidays;
+            this.currentYear = Year.now().getValue();
+            for (int year = currentYear - 1; year <= currentYear + 1; year++) {
+                year(year);
+            }
+        }
+
+        private YearCalendar year(int year) {
+            YearCalendar calendar = years.get(year); // Avoids the computeIfAbsent lambda on the hot path
+            if (calendar != null) {
+                return calendar;
+            }
+            if (Math.abs((long) year - currentYear) > CACHED_YEARS) {
+                return compute(year);
+            }
+            return years.computeIfAbsent(year, this::compute);
+        }
+
+        private YearCalendar compute(int year) {
+            int[] masks = new int[12];
+            int[] counts = new int[12];
+            for (int month = 1; month <= 12; month++) {
+                YearMonth yearMonth = YearMonth.of(year, month);
+                int mask = 0;
+                for (int day = 1; day <= yearMonth.lengthOfMonth(); day++) {
+                    LocalDate date = yearMonth.atDay(day);
+                    if (!weekendDays.contains(date.getDayOfWeek()) && !holidays.contains(date)) {
+                        mask |= 1 << (day - 1);
+                    }
+                }
+                masks[month - 1] = mask;
+                counts[month - 1] = Integer.bitCount(mask);
+            }
+            return new YearCalendar(masks, counts);
+        }
+    }
+
+    private record YearCalendar(int[] masks, int[] counts) {
+    }
+}
@@ -0,0 +1,50 @@
+package com.au.cl.util;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * Picks the BCrypt cost (log2 rounds) that best matches a target hashing latency on the current hardware.
+ * Each extra cost step doubles the work, so only a couple of hashes per step have to be measured.
+ */
+public final class BCryptCostCalibrator {
+
+    private static final String SAMPLE_PASSWORD = "calibration-Sample-Passw0rd";
+
+    private BCryptCostCalibrator() {
+    }
+
+    /**
+     * Measures BCrypt on this machine and returns the highest cost whose hash time stays within the target.
+     * @param targetMillis The maximum acceptable time for a single hash, in milliseconds.
+     * @param minStrength The lowest cost that may be returned (never goes below this, even on slow hardware).
+     * @param maxStrength The highest cost that may be returned.
+     * @return The calibrated BCrypt strength.
+     */
+    public static int calibrate(long targetMillis, int minStrength, int maxStrength) {
+        new BCryptPasswordEncoder(minStrength).encode(SAMPLE_PASSWORD); // Warm up the JIT
+
+        int chosen = minStrength;
+        for (int strength = minStrength; strength <= maxStrength; strength++) {
+            long elapsedMillis = timeHash(strength);
+            if (elapsedMillis > targetMillis) {
+                break;
+            }
+            chosen = strength;
+            if (elapsedMillis * 2 > targetMillis) {
+                break; // The next step would double the time and overshoot, no need to measure it
+            }
+        }
+        return chosen;
+    }
+
+    private static long timeHash(int strength) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 2; i++) { // Best of two, to filter out scheduling noise
+            long start = System.nanoTime();
+            encoder.encode(SAMPLE_PASSWORD);
+            best = Math.min(best, (System.nanoTime() - start) / 1_000_000);
+        }
+        return best;
+    }
+}
@@ -0,0 +1,75 @@
+package com.au.cl.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free, sparse set of non-negative long values (e.g. user ids).
+ * Bits are stored in fixed-size pages of atomic words that are allocated on first use,
+ * so a few large ids do not force a huge array and concurrent writers never block each other.
+ */
+public class ConcurrentBitSet {
+
+    private static final int WORDS_PER_PAGE = 64; // 4096 bits per page
+    private static final int BITS_PER_PAGE = WORDS_PER_PAGE * 64;
+
+    private final Map<Long, AtomicLongArray> pages = new ConcurrentHashMap<>();
+
+    /**
+     * Sets a bit if it was not set yet. Exactly one of several concurrent callers for the same bit gets true.
+     * @param index The bit to set.
+     * @return True if this call set the bit, false if it was already set.
+     */
+    public boolean setIfAbsent(long index) {
+        AtomicLongArray page = pages.computeIfAbsent(pageOf(index), p -> new AtomicLongArray(WORDS_PER_PAGE));
+        int word = wordOf(index);
+        long mask = 1L << index;
+        long current;
+        do {
+            current = page.get(word);
+            if ((current & mask) != 0) {
+                return false;
+            }
+        } while (!page.compareAndSet(word, current, current | mask));
+        return true;
+    }
+
+    /**
+     * Clears a bit.
+     * @param index The bit to clear.
+     * @return True if this call cleared the bit, false if it was not set.
+     */
+    public boolean clear(long index) {
+        AtomicLongArray page = pages.get(pageOf(index));
+        if (page == null) {
+            return false;
+        }
+        int word = wordOf(index);
+        long mask = 1L << index;
+        long current;
+        do {
+            current = page.get(word);
+            if ((current & mask) == 0) {
+                return false;
+            }
+        } while (!page.compareAndSet(word, current, current & ~mask));
+        return true;
+    }
+
+    public boolean get(long index) {
+        AtomicLongArray page = pages.get(pageOf(index));
+        return page != null && (page.get(wordOf(index)) & (1L << index)) != 0;
+    }
+
+    private static long pageOf(long index) {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("Bit index must not be negative: " + index);
+        }
+        return index / BITS_PER_PAGE;
+    }
+
+    private static int wordOf(long index) {
+        return (int) ((index % BITS_PER_PAGE) >>> 6);
+    }
+}
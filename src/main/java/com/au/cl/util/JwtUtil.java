@@ -2,7 +2,13 @@
 package com.au.cl.util;
 
 import com.au.cl.config.JwtConfig; // Import JwtConfig to get expiration times
+import com.au.cl.model.User;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
@@ -11,10 +17,19 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -22,19 +37,68 @@ import java.util.stream.Collectors;
 @Component
 public class JwtUtil {
 
-    @Value("${jwt.secret}")
-    private String secret;
+    public static final String REFRESH_TOKEN_TYPE = "refresh";
 
     private final JwtConfig jwtConfig;
 
-    // Constructor injection for JwtConfig
-    public JwtUtil(JwtConfig jwtConfig) {
+    // The signing key and parser are built once; JwtParser is immutable and safe to share across threads.
+    private final Key signingKey;
+    private final JwtParser jwtParser;
+
+    // Tokens that already passed signature verification, keyed by SHA-256 digest and evicted at token expiry.
+    private final Cache<String, VerifiedClaims> verifiedTokens;
+
+    // Constructor injection for JwtConfig and the signing secret
+    public JwtUtil(JwtConfig jwtConfig,
+                   @Value("${jwt.secret}") String secret,
+                   @Value("${jwt.verified-cache.max-size:10000}") long verifiedCacheMaxSize) {
         this.jwtConfig = jwtConfig;
+        this.signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret));
+        this.jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedCacheMaxSize)
+                .expireAfter(new Expiry<String, VerifiedClaims>() {
+                    @Override
+                    public long expireAfterCreate(String key, VerifiedClaims claims, long currentTime) {
+                        return Math.max(0, Duration.between(Instant.now(), claims.getExpiresAt()).toNanos());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, VerifiedClaims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, VerifiedClaims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
     }
 
-    private Key getSigningKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secret);
-        return Keys.hmacShaKeyFor(keyBytes);
+    /**
+     * Verifies a JWT token exactly once and returns its claims.
+     * Repeated calls with the same token are served from the verified-token cache until the token expires,
+     * so callers should parse once per request and read everything they need from the returned object.
+     * @param token The JWT token.
+     * @return The verified claims.
+     * @throws JwtException if the token is malformed, has an invalid signature or is expired.
+     */
+    public VerifiedClaims parseToken(String token) {
+        String digest = digest(token);
+        VerifiedClaims cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null) {
+            if (!cached.isExpiredAt(Instant.now())) {
+                return cached;
+            }
+            verifiedTokens.invalidate(digest); // Expired between eviction passes
+        }
+
+        VerifiedClaims verified = toVerifiedClaims(extractAllClaims(token));
+        verifiedTokens.put(digest, verified);
+        return verified;
     }
 
     /**
@@ -55,11 +119,44 @@ public class JwtUtil {
      * @return The Claims object containing all claims.
      */
     private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return jwtParser.parseClaimsJws(token).getBody();
+    }
+
+    /**
+     * Copies the claims this application relies on into an immutable VerifiedClaims object.
+     * @param claims The claims of a token whose signature has been verified.
+     * @return The corresponding VerifiedClaims.
+     */
+    private VerifiedClaims toVerifiedClaims(Claims claims) {
+        List<String> roles = Collections.emptyList();
+        Object rolesClaim = claims.get("roles");
+        if (rolesClaim instanceof List<?> roleList) {
+            roles = roleList.stream().map(String::valueOf).collect(Collectors.toUnmodifiableList());
+        }
+        Long userId = toLong(claims.get("uid"));
+        Long securityVersion = toLong(claims.get("sv"));
+        Object tokenType = claims.get("typ");
+        return new VerifiedClaims(claims.getSubject(), roles, claims.getExpiration().toInstant(), userId, securityVersion,
+                claims.getId(), tokenType == null ? null : tokenType.toString());
+    }
+
+    private static Long toLong(Object claim) {
+        return claim instanceof Number number ? number.longValue() : null;
+    }
+
+    /**
+     * Computes the cache key for a token. The full token is hashed, so a forged payload can never
+     * collide with the entry of a genuine token that shares its signature segment.
+     * @param token The JWT token.
+     * @return The Base64-encoded SHA-256 digest of the token.
+     */
+    private static String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(sha256.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available on this JVM", e);
+        }
     }
 
     /**
@@ -68,7 +165,7 @@ public class JwtUtil {
      * @return The username.
      */
     public String extractUsername(String token) {
-        return extractClaim(token, Claims::getSubject);
+        return parseToken(token).getSubject();
     }
 
     /**
@@ -77,21 +174,13 @@ public class JwtUtil {
      * @return The expiration Date.
      */
     public Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
-    }
-
-    /**
-     * Checks if the JWT token is expired.
-     * @param token The JWT token.
-     * @return True if the token is expired, false otherwise.
-     */
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+        return Date.from(parseToken(token).getExpiresAt());
     }
 
     /**
      * Generates an Access Token for a given UserDetails.
-     * Includes user roles as a claim.
+     * Includes user roles as a claim, plus the user id and security version when the
+     * UserDetails is our User entity, so the request filter can authenticate statelessly.
      * @param userDetails The UserDetails object for which to generate the token.
      * @return The generated Access Token string.
      */
@@ -101,18 +190,25 @@ public class JwtUtil {
         claims.put("roles", userDetails.getAuthorities().stream()
                                 .map(a -> a.getAuthority().replace("ROLE_", ""))
                                 .collect(Collectors.toList()));
+        if (userDetails instanceof User user) {
+            claims.put("uid", user.getId());
+            claims.put("sv", user.getSecurityVersion());
+        }
         return createToken(claims, userDetails.getUsername(), jwtConfig.getAccessTokenExpirationMs());
     }
 
     /**
      * Generates a Refresh Token for a given UserDetails.
      * Refresh tokens typically have fewer claims and longer expiration.
+     * Each one carries a unique id (jti) so it can be used exactly once and revoked.
      * @param userDetails The UserDetails object for which to generate the token.
      * @return The generated Refresh Token string.
      */
     public String generateRefreshToken(UserDetails userDetails) {
         Map<String, Object> claims = new HashMap<>();
-        // Refresh token typically only needs subject (username) and expiration
+        // Refresh token only needs subject (username), expiration, its id and its type
+        claims.put(Claims.ID, UUID.randomUUID().toString());
+        claims.put("typ", REFRESH_TOKEN_TYPE);
         return createToken(claims, userDetails.getUsername(), jwtConfig.getRefreshTokenExpirationMs());
     }
 
@@ -130,7 +226,7 @@ public class JwtUtil {
                 .setSubject(subject)
                 .setIssuedAt(new Date(now))
                 .setExpiration(new Date(now + expirationTime))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
@@ -142,7 +238,17 @@ public class JwtUtil {
      * @return True if the token is valid, false otherwise.
      */
     public Boolean validateToken(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+        final VerifiedClaims claims = parseToken(token);
+        return validateClaims(claims, userDetails);
+    }
+
+    /**
+     * Validates already verified claims against a UserDetails object, without touching the token again.
+     * @param claims The claims returned by parseToken.
+     * @param userDetails The UserDetails object to validate against.
+     * @return True if the claims belong to the user and have not expired, false otherwise.
+     */
+    public boolean validateClaims(VerifiedClaims claims, UserDetails userDetails) {
+        return claims.getSubject().equals(userDetails.getUsername()) && !claims.isExpiredAt(Instant.now());
     }
 }
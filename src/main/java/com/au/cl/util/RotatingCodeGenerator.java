@@ -0,0 +1,71 @@
+package com.au.cl.util;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+/**
+ * Derives short-lived 6-digit attendance codes from a per-session secret and a time step,
+ * the same way HOTP/TOTP do (RFC 4226 dynamic truncation over HMAC-SHA256).
+ */
+public final class RotatingCodeGenerator {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int SECRET_BYTES = 32;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private RotatingCodeGenerator() {
+    }
+
+    /**
+     * Generates a new random session secret.
+     * @return The secret bytes.
+     */
+    public static byte[] newSecret() {
+        byte[] secret = new byte[SECRET_BYTES];
+        RANDOM.nextBytes(secret);
+        return secret;
+    }
+
+    /**
+     * Computes the code for a time step.
+     * @param secret The session secret.
+     * @param step The time step counter.
+     * @return The 6-digit code.
+     */
+    public static String codeAt(byte[] secret, long step) {
+        byte[] hash = hmac(secret, step);
+        int offset = hash[hash.length - 1] & 0x0f;
+        int binary = ((hash[offset] & 0x7f) << 24)
+                | ((hash[offset + 1] & 0xff) << 16)
+                | ((hash[offset + 2] & 0xff) << 8)
+                | (hash[offset + 3] & 0xff);
+        return String.format("%06d", binary % 1_000_000);
+    }
+
+    /**
+     * Checks a code against the code of a time step in constant time.
+     * @param secret The session secret.
+     * @param step The time step counter.
+     * @param code The code entered by the user.
+     * @return True if the code is the one for the given step.
+     */
+    public static boolean matches(byte[] secret, long step, String code) {
+        return MessageDigest.isEqual(codeAt(secret, step).getBytes(StandardCharsets.US_ASCII),
+                code.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static byte[] hmac(byte[] secret, long step) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(secret, ALGORITHM));
+            return mac.doFinal(ByteBuffer.allocate(Long.BYTES).putLong(step).array());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available on this JVM", e);
+        }
+    }
+}
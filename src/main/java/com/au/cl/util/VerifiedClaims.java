@@ -0,0 +1,42 @@
+package com.au.cl.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Immutable view of a JWT whose signature and expiry have already been verified by JwtUtil.
+ * Instances are shared through the verified-token cache, so they must never be mutated.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class VerifiedClaims {
+    private final String subject;       // Username the token was issued to
+    private final List<String> roles;   // Role names without the "ROLE_" prefix (empty for refresh tokens)
+    private final Instant expiresAt;
+    private final Long userId;          // Null for refresh tokens and tokens issued before stateless mode
+    private final Long securityVersion; // Null for refresh tokens and tokens issued before stateless mode
+    private final String tokenId;       // jti; set on refresh tokens only
+    private final String tokenType;     // "refresh" for refresh tokens, null for access tokens
+
+    /**
+     * Checks if these claims belong to a refresh token rather than an access token.
+     * @return True for refresh tokens.
+     */
+    public boolean isRefreshToken() {
+        return JwtUtil.REFRESH_TOKEN_TYPE.equals(tokenType);
+    }
+
+    /**
+     * Checks if these claims are past their expiry.
+     * @param now The instant to compare against.
+     * @return True if the token has expired at the given instant.
+     */
+    public boolean isExpiredAt(Instant now) {
+        return !now.isBefore(expiresAt);
+    }
+}
@@ -0,0 +1,149 @@
+package com.au.cl.service;
+
+import com.au.cl.dto.AttendanceCalendarDTO;
+import com.au.cl.model.AttendanceMonthlyRollup;
+import com.au.cl.repository.AttendanceMonthlyRollupRepository;
+import com.au.cl.repository.HolidayRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks the bitmap totals and streaks of AttendanceCalendarService.getCalendar against a plain day-by-day walk.
+ */
+class AttendanceCalendarServiceTest {
+
+    private static final Long USER_ID = 1L;
+
+    private final AttendanceMonthlyRollupRepository rollupRepository = mock(AttendanceMonthlyRollupRepository.class);
+    private final WorkCalendar workCalendar = new WorkCalendar(mock(HolidayRepository.class), event -> { },
+            List.of(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY), List.of("2024-12-25", "2024-05-01", LocalDate.now().withDayOfMonth(1).toString()));
+
+    @Test
+    void streaksMatchDayByDayWalkForPastYear() {
+        Random random = new Random(7);
+        for (int i = 0; i < 50; i++) {
+            assertMatchesWalk(2024, randomMasks(random, 0.6 + 0.4 * random.nextDouble()));
+        }
+    }
+
+    @Test
+    void streaksMatchDayByDayWalkForCurrentYear() {
+        Random random = new Random(11);
+        for (int i = 0; i < 50; i++) {
+            assertMatchesWalk(LocalDate.now().getYear(), randomMasks(random, 0.6 + 0.4 * random.nextDouble()));
+        }
+    }
+
+    @Test
+    void streakRunsAcrossMonthsAndIgnoresWeekendsAndHolidays() {
+        int[] masks = new int[12];
+        for (int month = 0; month < 12; month++) {
+            masks[month] = -1; // Present every day
+        }
+        masks[2] &= ~(1 << 14); // Friday 2024-03-15 missed
+        AttendanceCalendarDTO calendar = calendar(2024, masks);
+
+        // Every workday of 2024 from 2024-03-18 on: 2024-12-25 and 2024-05-01 are holidays
+        int expectedCurrent = 0;
+        for (LocalDate day = LocalDate.of(2024, 3, 18); day.getYear() == 2024; day = day.plusDays(1)) {
+            if (workCalendar.isWorkday(day)) {
+                expectedCurrent++;
+            }
+        }
+        assertEquals(expectedCurrent, calendar.getCurrentStreak());
+        assertEquals(expectedCurrent, calendar.getLongestStreak());
+        assertEquals(1, calendar.getStats().getDaysAbsent());
+    }
+
+    @Test
+    void missingTodayDoesNotBreakTheStreak() {
+        LocalDate today = LocalDate.now();
+        int[] masks = new int[12];
+        for (int month = 0; month < 12; month++) {
+            masks[month] = -1;
+        }
+        masks[today.getMonthValue() - 1] &= ~(1 << (today.getDayOfMonth() - 1));
+        AttendanceCalendarDTO calendar = calendar(today.getYear(), masks);
+
+        assertEquals(walk(today.getYear(), masks)[0], calendar.getCurrentStreak());
+        assertEquals(workCalendar.isWorkday(today) ? 1 : 0, calendar.getStats().getDaysAbsent());
+    }
+
+    private void assertMatchesWalk(int year, int[] masks) {
+        AttendanceCalendarDTO calendar = calendar(year, masks);
+        long[] expected = walk(year, masks);
+        assertEquals(expected[0], calendar.getCurrentStreak(), "current streak");
+        assertEquals(expected[1], calendar.getLongestStreak(), "longest streak");
+        assertEquals(expected[2], calendar.getStats().getDaysPresent(), "days present");
+        assertEquals(expected[3], calendar.getStats().getDaysAbsent(), "days absent");
+    }
+
+    private AttendanceCalendarDTO calendar(int year, int[] masks) {
+        List<AttendanceMonthlyRollup> rollups = new ArrayList<>();
+        for (int month = 1; month <= 12; month++) {
+            AttendanceMonthlyRollup rollup = new AttendanceMonthlyRollup();
+            rollup.setUserId(USER_ID);
+            rollup.setPeriod(year * 100 + month);
+            rollup.setPresentDaysMask(masks[month - 1] & (int) ((1L << YearMonth.of(year, month).lengthOfMonth()) - 1));
+            rollups.add(rollup);
+        }
+        when(rollupRepository.findByUserIdAndPeriodBetweenOrderByPeriod(any(), anyInt(), anyInt())).thenReturn(rollups);
+        // A fresh service per calendar, so nothing is served from the cache of a previous one
+        return new AttendanceCalendarService(rollupRepository, workCalendar, 10, 300).getCalendar(USER_ID, year);
+    }
+
+    /**
+     * Walks the days of the year up to today.
+     * @return [currentStreak, longestStreak, daysPresent, daysAbsent]
+     */
+    private long[] walk(int year, int[] masks) {
+        LocalDate today = LocalDate.now();
+        long run = 0;
+        long longest = 0;
+        long present = 0;
+        long absent = 0;
+        for (LocalDate day = LocalDate.of(year, 1, 1); day.getYear() == year && !day.isAfter(today); day = day.plusDays(1)) {
+            boolean marked = (masks[day.getMonthValue() - 1] & 1 << (day.getDayOfMonth() - 1)) != 0;
+            if (marked) {
+                present++;
+            }
+            if (!workCalendar.isWorkday(day)) {
+                continue;
+            }
+            if (marked) {
+                run++;
+                longest = Math.max(longest, run);
+            } else {
+                absent++;
+                if (!day.equals(today)) {
+                    run = 0;
+                }
+            }
+        }
+        return new long[]{run, longest, present, absent};
+    }
+
+    private static int[] randomMasks(Random random, double presence) {
+        int[] masks = new int[12];
+        for (int month = 0; month < 12; month++) {
+            for (int day = 0; day < 31; day++) {
+                if (random.nextDouble() < presence) {
+                    masks[month] |= 1 << day;
+                }
+            }
+        }
+        return masks;
+    }
+}
@@ -0,0 +1,110 @@
+package com.au.cl.service;
+
+import com.au.cl.model.AttendanceSession;
+import com.au.cl.model.Role;
+import com.au.cl.model.User;
+import com.au.cl.repository.AttendanceMonthlyRollupRepository;
+import com.au.cl.repository.AttendanceRecordBatchWriter;
+import com.au.cl.repository.AttendanceRecordRepository;
+import com.au.cl.repository.AttendanceSessionRepository;
+import com.au.cl.repository.HolidayRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares attendance marks per second for the synchronous path (one JPA insert and transaction per mark)
+ * and the write-behind path (in-memory accept, batched JDBC inserts), against H2 in MySQL mode.
+ * Run with: mvn test -Dgroups=benchmark -DexcludedGroups= -Dtest=AttendanceWriteBehindBenchmark
+ */
+@Tag("benchmark")
+@Import(AttendanceRecordBatchWriter.class)
+class AttendanceWriteBehindBenchmark extends H2JpaTestSupport {
+
+    private static final int AVENGERS = Integer.getInteger("bench.avengers", 2000);
+    private static final int REQUEST_THREADS = Integer.getInteger("bench.threads", 32);
+
+    @Autowired
+    private AttendanceSessionRepository sessionRepository;
+    @Autowired
+    private AttendanceRecordRepository recordRepository;
+    @Autowired
+    private AttendanceMonthlyRollupRepository rollupRepository;
+    @Autowired
+    private AttendanceRecordBatchWriter batchWriter;
+    @Autowired
+    private HolidayRepository holidayRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void marksPerSecondSynchronousVersusWriteBehind() throws Exception {
+        User admin = userRepository.save(newUser("bench-admin", Role.ADMIN));
+        List<User> avengers = new ArrayList<>();
+        for (int i = 0; i < AVENGERS; i++) {
+            avengers.add(newUser("bench-avenger-" + i, Role.AVENGER));
+        }
+        avengers = userRepository.saveAll(avengers);
+
+        double synchronous = run(false, "100001", admin, avengers);
+        double writeBehind = run(true, "100002", admin, avengers);
+
+        System.out.printf("Attendance marks: synchronous %.0f marks/s, write-behind %.0f marks/s (%.1fx), %d avengers, %d threads%n",
+                synchronous, writeBehind, writeBehind / synchronous, AVENGERS, REQUEST_THREADS);
+    }
+
+    private double run(boolean writeBehind, String code, User admin, List<User> avengers) throws Exception {
+        AttendanceCodeAllocator codeAllocator = new AttendanceCodeAllocator();
+        AttendanceSessionIndex sessionIndex = new AttendanceSessionIndex(sessionRepository, recordRepository, codeAllocator);
+        WorkCalendar workCalendar = new WorkCalendar(holidayRepository, event -> { }, List.of(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY), List.of());
+        AttendanceCalendarService attendanceCalendar = new AttendanceCalendarService(rollupRepository, workCalendar, 10_000, 300);
+        AttendanceWriteBehindQueue queue = new AttendanceWriteBehindQueue(batchWriter, attendanceCalendar, writeBehind, 10_000, 200, 50, 1_000, 3, 100);
+        queue.start();
+        AttendanceSessionExpiryScheduler expiryScheduler = new AttendanceSessionExpiryScheduler(sessionRepository, recordRepository,
+                sessionIndex, queue, event -> { }, transactionManager, 15_000, 500); // Never started: sessions outlive the run
+        AttendanceService attendanceService = new AttendanceService(sessionRepository, recordRepository, userRepository,
+                sessionIndex, codeAllocator, queue, expiryScheduler, rollupRepository, batchWriter, attendanceCalendar, workCalendar,
+                new AttendanceLiveHub(sessionIndex, 4, 100), transactionManager, 10_000, 300);
+
+        AttendanceSession session = new AttendanceSession();
+        session.setAdminUser(admin);
+        session.setAttendanceCode(code);
+        session.setStartTime(LocalDateTime.now());
+        session.setEndTime(LocalDateTime.now().plusMinutes(10));
+        session = sessionRepository.save(session);
+        sessionIndex.register(session);
+
+        ExecutorService requestThreads = Executors.newFixedThreadPool(REQUEST_THREADS); // Simulated Tomcat threads
+        try {
+            long start = System.nanoTime();
+            List<Future<?>> results = new ArrayList<>();
+            for (User avenger : avengers) {
+                results.add(requestThreads.submit(() -> attendanceService.markAttendance(avenger, code)));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+            queue.flush(); // Count the time until every record is in the database
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            assertEquals(avengers.size(), recordRepository.findUserIdsBySessionId(session.getId()).size());
+            assertEquals(avengers.size(), rollupRepository.count());
+            return avengers.size() / seconds;
+        } finally {
+            requestThreads.shutdown();
+            queue.shutdown();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.au.cl.service;
+
+import com.au.cl.model.Role;
+import com.au.cl.model.User;
+import com.au.cl.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Shared setup of the load tests and benchmarks that run the real services against H2 in MySQL mode.
+ * Each test context gets its own in-memory database; test classes that @Import the same services share
+ * the cached context and so the database, and must not assume empty tables. Tests are not wrapped in
+ * a transaction, so every payment, transfer or mark commits on its own, as in production, and seeded
+ * data is visible to other threads.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:${random.uuid};MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "logging.level.com.au.cl=WARN"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+abstract class H2JpaTestSupport {
+
+    @Autowired
+    protected UserRepository userRepository;
+
+    /**
+     * An unsaved user with a placeholder email and password.
+     */
+    protected static User newUser(String username, Role role) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@avengers.test");
+        user.setPassword("not-a-real-hash");
+        user.setRole(role);
+        return user;
+    }
+}
@@ -0,0 +1,57 @@
+package com.au.cl.service;
+
+import com.au.cl.util.BCryptCostCalibrator;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measures login throughput (BCrypt verifications per second, overall and per core) through
+ * PasswordHashingService at the cost calibrated for this machine.
+ * Run with: mvn test -Dgroups=benchmark -DexcludedGroups= -Dtest=PasswordHashingServiceBenchmark
+ */
+@Tag("benchmark")
+class PasswordHashingServiceBenchmark {
+
+    private static final long TARGET_MILLIS = Long.getLong("bench.bcrypt.target-ms", 250);
+    private static final int LOGINS_PER_CORE = Integer.getInteger("bench.logins-per-core", 20);
+
+    @Test
+    void loginsPerSecondPerCore() throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int strength = BCryptCostCalibrator.calibrate(TARGET_MILLIS, 10, 16);
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        String hash = encoder.encode("correct horse battery staple");
+
+        int logins = cores * LOGINS_PER_CORE;
+        PasswordHashingService hashingService = new PasswordHashingService(encoder, cores, logins, 600_000);
+        ExecutorService requestThreads = Executors.newFixedThreadPool(cores * 4); // Simulated Tomcat threads
+        try {
+            long start = System.nanoTime();
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < logins; i++) {
+                results.add(requestThreads.submit(() ->
+                        hashingService.execute(() -> encoder.matches("correct horse battery staple", hash))));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            double loginsPerSecond = logins / seconds;
+            System.out.printf("BCrypt cost %d: %d logins in %.2f s -> %.1f logins/s, %.2f logins/s per core (%d cores)%n",
+                    strength, logins, seconds, loginsPerSecond, loginsPerSecond / cores, cores);
+        } finally {
+            requestThreads.shutdown();
+            hashingService.shutdown();
+        }
+    }
+}
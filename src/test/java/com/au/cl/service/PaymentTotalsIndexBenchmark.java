@@ -0,0 +1,130 @@
+package com.au.cl.service;
+
+import com.au.cl.model.Role;
+import com.au.cl.model.Transaction.TransactionType;
+import com.au.cl.model.User;
+import com.au.cl.repository.LedgerBatchWriter;
+import com.au.cl.repository.LedgerDailyRollupRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the cost of one date-range payment total answered by PaymentTotalsIndex (Fenwick trees in memory)
+ * with the SQL aggregates it replaces: SUM over the raw transactions, and SUM over ledger_daily_rollup,
+ * against H2 in MySQL mode. Ranges are random within two years of daily payments.
+ * Run with: mvn test -Dgroups=benchmark -DexcludedGroups= -Dtest=PaymentTotalsIndexBenchmark
+ */
+@Tag("benchmark")
+@Import({LedgerBatchWriter.class, PaymentTotalsIndex.class})
+class PaymentTotalsIndexBenchmark extends H2JpaTestSupport {
+
+    private static final int AVENGERS = Integer.getInteger("bench.avengers", 50);
+    private static final int DAYS = Integer.getInteger("bench.days", 730);
+    private static final int SQL_QUERIES = Integer.getInteger("bench.sql-queries", 500);
+    private static final int INDEX_QUERIES = Integer.getInteger("bench.index-queries", 1_000_000);
+
+    private static final String SUM_TRANSACTIONS_SQL = "SELECT COALESCE(SUM(amount), 0) FROM transactions "
+            + "WHERE transaction_type = ? AND transaction_date >= ? AND transaction_date < ?";
+
+    @Autowired
+    private LedgerBatchWriter ledgerBatchWriter;
+    @Autowired
+    private LedgerDailyRollupRepository rollupRepository;
+    @Autowired
+    private PaymentTotalsIndex paymentTotalsIndex;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void rangeTotalIndexVersusSql() {
+        LocalDate firstDay = LocalDate.now().minusDays(DAYS - 1);
+        seed(firstDay);
+
+        Random random = new Random(42);
+        Range[] ranges = new Range[1024];
+        for (int i = 0; i < ranges.length; i++) {
+            LocalDate from = firstDay.plusDays(random.nextInt(DAYS));
+            LocalDate to = from.plusDays(random.nextInt((int) (DAYS - (from.toEpochDay() - firstDay.toEpochDay()))));
+            ranges[i] = new Range(random.nextBoolean() ? TransactionType.SALARY : TransactionType.SEND_MONEY, from, to);
+        }
+        for (int i = 0; i < 20; i++) { // All three must agree
+            Range range = ranges[i];
+            double expected = sumTransactions(range);
+            assertEquals(expected, rollupRepository.sumAmountByTypeBetween(range.type(), range.from(), range.to()), 1e-6);
+            assertEquals(expected, paymentTotalsIndex.sum(range.type(), range.from(), range.to()), 1e-6);
+        }
+
+        double transactionsNanos = measure(SQL_QUERIES, ranges, this::sumTransactions);
+        double rollupNanos = measure(SQL_QUERIES, ranges, range -> rollupRepository.sumAmountByTypeBetween(range.type(), range.from(), range.to()));
+        double indexNanos = measure(INDEX_QUERIES, ranges, range -> paymentTotalsIndex.sum(range.type(), range.from(), range.to()));
+
+        System.out.printf("Range payment total over %d days, %d transactions: SUM(transactions) %.0f ns/op, "
+                        + "SUM(ledger_daily_rollup) %.0f ns/op, PaymentTotalsIndex %.0f ns/op (%.0fx faster than the rollup query)%n",
+                DAYS, AVENGERS * DAYS, transactionsNanos, rollupNanos, indexNanos, rollupNanos / indexNanos);
+    }
+
+    private void seed(LocalDate firstDay) {
+        User admin = userRepository.save(newUser("bench-admin", Role.ADMIN));
+        List<User> avengers = new ArrayList<>();
+        for (int i = 0; i < AVENGERS; i++) {
+            avengers.add(newUser("bench-avenger-" + i, Role.AVENGER));
+        }
+        avengers = userRepository.saveAll(avengers);
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        for (int day = 0; day < DAYS; day++) {
+            List<LedgerBatchWriter.Row> rows = new ArrayList<>(AVENGERS);
+            for (int i = 0; i < AVENGERS; i++) {
+                rows.add(new LedgerBatchWriter.Row(admin.getId(), avengers.get(i).getId(), 10 + (day * 31 + i) % 97,
+                        i % 3 == 0 ? TransactionType.SEND_MONEY : TransactionType.SALARY, firstDay.plusDays(day).atTime(12, 0), null));
+            }
+            transactionTemplate.executeWithoutResult(status -> ledgerBatchWriter.insertTransactions(rows));
+        }
+    }
+
+    private double sumTransactions(Range range) {
+        return jdbcTemplate.queryForObject(SUM_TRANSACTIONS_SQL, Double.class, range.type().name(),
+                Timestamp.valueOf(range.from().atStartOfDay()), Timestamp.valueOf(range.to().plusDays(1).atStartOfDay()));
+    }
+
+    /**
+     * Average nanoseconds per query, after running the same number of queries as warm-up.
+     */
+    private static double measure(int queries, Range[] ranges, RangeQuery query) {
+        double sink = 0;
+        for (int i = 0; i < queries; i++) {
+            sink += query.sum(ranges[i & (ranges.length - 1)]);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            sink += query.sum(ranges[i & (ranges.length - 1)]);
+        }
+        double nanos = (double) (System.nanoTime() - start) / queries;
+        if (sink == 42) { // Keeps the JIT from dropping the queries
+            System.out.println(sink);
+        }
+        return nanos;
+    }
+
+    private record Range(TransactionType type, LocalDate from, LocalDate to) {
+    }
+
+    private interface RangeQuery {
+        double sum(Range range);
+    }
+}
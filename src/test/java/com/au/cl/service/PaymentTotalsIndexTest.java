@@ -0,0 +1,81 @@
+package com.au.cl.service;
+
+import com.au.cl.event.PaymentsRecordedEvent;
+import com.au.cl.model.Transaction.TransactionType;
+import com.au.cl.repository.LedgerDailyRollupRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks the Fenwick tree behind PaymentTotalsIndex against plain sums, including when it grows,
+ * and that payments recorded during a reload are counted exactly once.
+ */
+class PaymentTotalsIndexTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 6, 15);
+
+    @Test
+    void sumsMatchDailyAmountsAfterGrowingInBothDirections() {
+        PaymentTotalsIndex.DailyFenwickTree tree = new PaymentTotalsIndex.DailyFenwickTree(TODAY);
+        TreeMap<LocalDate, Double> expected = new TreeMap<>();
+
+        // Inside the initial capacity, then far after it (grows forward), then far before it (grows backward).
+        // Amounts are multiples of 0.25, so every sum is exact in a double.
+        LocalDate[] days = {TODAY, TODAY.minusDays(200), TODAY.plusYears(3), TODAY.minusYears(5), TODAY.plusDays(1),
+                TODAY.minusYears(5).minusDays(1), TODAY.plusYears(3).plusDays(400)};
+        for (int i = 0; i < days.length; i++) {
+            double amount = 0.25 * (i + 1);
+            tree.add(days[i], amount);
+            tree.add(days[i], amount); // A second payment on the same day
+            expected.merge(days[i], 2 * amount, Double::sum);
+        }
+
+        LocalDate first = expected.firstKey().minusDays(10);
+        LocalDate last = expected.lastKey().plusDays(10);
+        for (LocalDate from : expected.keySet()) {
+            for (LocalDate to : expected.keySet()) {
+                if (!from.isAfter(to)) {
+                    assertEquals(sum(expected, from, to), tree.sum(from, to), from + " to " + to);
+                }
+            }
+            assertEquals(sum(expected, first, from), tree.sum(first, from), first + " to " + from);
+            assertEquals(sum(expected, from, last), tree.sum(from, last), from + " to " + last);
+        }
+        assertEquals(0, tree.sum(first.minusYears(100), first));
+        assertEquals(0, tree.sum(last, last.plusYears(100)));
+    }
+
+    @Test
+    void paymentsRecordedDuringReloadAreCountedOnce() {
+        LedgerDailyRollupRepository rollupRepository = mock(LedgerDailyRollupRepository.class);
+        PaymentTotalsIndex index = new PaymentTotalsIndex(rollupRepository);
+        LocalDate today = LocalDate.now();
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{TransactionType.SALARY, today, 10.0});
+        when(rollupRepository.sumAmountByTypeAndDate()).thenAnswer(invocation -> rows);
+        index.load();
+
+        // A payment committing while the reload query runs is not in its snapshot
+        when(rollupRepository.sumAmountByTypeAndDate()).thenAnswer(invocation -> {
+            index.onPaymentsRecorded(new PaymentsRecordedEvent(List.of(new PaymentsRecordedEvent.DailyTotal(TransactionType.SALARY, today, 2.5))));
+            assertEquals(12.5, index.sum(TransactionType.SALARY, today, today)); // Sums are not blocked by the reload
+            return rows;
+        });
+        index.load();
+
+        assertEquals(12.5, index.sum(TransactionType.SALARY, today, today));
+        assertEquals(0, index.sum(TransactionType.SEND_MONEY, today, today));
+    }
+
+    private static double sum(TreeMap<LocalDate, Double> amounts, LocalDate from, LocalDate to) {
+        return amounts.subMap(from, true, to, true).values().stream().mapToDouble(Double::doubleValue).sum();
+    }
+}
@@ -0,0 +1,76 @@
+package com.au.cl.service;
+
+import com.au.cl.dto.PaymentRequest;
+import com.au.cl.model.Role;
+import com.au.cl.model.Transaction.TransactionType;
+import com.au.cl.model.User;
+import com.au.cl.repository.LedgerBatchWriter;
+import com.au.cl.repository.TransactionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Fires concurrent payments at a few hot accounts through TransactionService.sendPayment
+ * and checks that no credit is lost, against H2 in MySQL mode. Runs in the default build;
+ * for a load run raise the count, e.g. mvn test -Dtest=TransactionServiceStressTest -Dstress.payments=4000
+ */
+@Import({TransactionService.class, LedgerBatchWriter.class, PaymentTotalsIndex.class})
+class TransactionServiceStressTest extends H2JpaTestSupport {
+
+    private static final int HOT_ACCOUNTS = Integer.getInteger("stress.accounts", 4);
+    private static final int PAYMENTS = Integer.getInteger("stress.payments", 400);
+    private static final int REQUEST_THREADS = Integer.getInteger("stress.threads", 32);
+
+    @Autowired
+    private TransactionService transactionService;
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Test
+    void concurrentPaymentsToHotAccountsAreNeverLost() throws Exception {
+        long existingTransactions = transactionRepository.count(); // Tests importing the same services share a database
+        User admin = userRepository.save(newUser("stress-admin", Role.ADMIN));
+        List<User> receivers = new ArrayList<>();
+        for (int i = 0; i < HOT_ACCOUNTS; i++) {
+            receivers.add(userRepository.save(newUser("stress-avenger-" + i, Role.AVENGER)));
+        }
+
+        // Amounts are multiples of 0.25, so every sum is exact in a double
+        double[] expected = new double[HOT_ACCOUNTS];
+        List<PaymentRequest> payments = new ArrayList<>(PAYMENTS);
+        for (int i = 0; i < PAYMENTS; i++) {
+            int account = i % HOT_ACCOUNTS;
+            double amount = 0.25 * (1 + i % 7);
+            TransactionType type = i % 2 == 0 ? TransactionType.SALARY : TransactionType.SEND_MONEY;
+            payments.add(new PaymentRequest(receivers.get(account).getUsername(), amount, type, null, "Stress payment " + i));
+            expected[account] += amount;
+        }
+
+        ExecutorService requestThreads = Executors.newFixedThreadPool(REQUEST_THREADS); // Simulated Tomcat threads
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (PaymentRequest payment : payments) {
+                results.add(requestThreads.submit(() -> transactionService.sendPayment(admin, payment)));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            requestThreads.shutdown();
+        }
+
+        for (int i = 0; i < HOT_ACCOUNTS; i++) {
+            assertEquals(expected[i], userRepository.findById(receivers.get(i).getId()).orElseThrow().getBalance());
+        }
+        assertEquals(PAYMENTS, transactionRepository.count() - existingTransactions);
+    }
+}
@@ -0,0 +1,96 @@
+package com.au.cl.service;
+
+import com.au.cl.dto.TransferRequest;
+import com.au.cl.model.Role;
+import com.au.cl.model.User;
+import com.au.cl.repository.LedgerBatchWriter;
+import com.au.cl.repository.TransactionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Has a few hot Avengers pay each other in both directions at once through TransactionService.transfer,
+ * and checks that money is conserved, never overdrawn and never lost, against H2 in MySQL mode.
+ * Runs in the default build; for a load run raise the count, e.g. mvn test -Dtest=TransferLoadTest -Dload.transfers=8000
+ */
+@Import({TransactionService.class, LedgerBatchWriter.class, PaymentTotalsIndex.class})
+class TransferLoadTest extends H2JpaTestSupport {
+
+    private static final int HOT_ACCOUNTS = Integer.getInteger("load.accounts", 8);
+    private static final int TRANSFERS = Integer.getInteger("load.transfers", 800);
+    private static final int REQUEST_THREADS = Integer.getInteger("load.threads", 32);
+    private static final double INITIAL_BALANCE = 25.0; // Low enough that some transfers are refused
+
+    @Autowired
+    private TransactionService transactionService;
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Test
+    void transfersBetweenHotAccounts() throws Exception {
+        long existingTransactions = transactionRepository.count(); // Tests importing the same services share a database
+        List<User> avengers = new ArrayList<>();
+        for (int i = 0; i < HOT_ACCOUNTS; i++) {
+            User avenger = newUser("load-avenger-" + i, Role.AVENGER);
+            avenger.setBalance(INITIAL_BALANCE);
+            avengers.add(userRepository.save(avenger));
+        }
+
+        // Balance changes in quarters, so the expected balances are exact
+        AtomicLongArray quarters = new AtomicLongArray(HOT_ACCOUNTS);
+        LongAdder completed = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        Random random = new Random(42);
+
+        ExecutorService requestThreads = Executors.newFixedThreadPool(REQUEST_THREADS); // Simulated Tomcat threads
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < TRANSFERS; i++) {
+                int from = random.nextInt(HOT_ACCOUNTS);
+                int to = (from + 1 + random.nextInt(HOT_ACCOUNTS - 1)) % HOT_ACCOUNTS;
+                int amountQuarters = 1 + random.nextInt(40);
+                User sender = avengers.get(from);
+                TransferRequest request = new TransferRequest(avengers.get(to).getUsername(), amountQuarters * 0.25, "Load transfer " + i);
+                results.add(requestThreads.submit(() -> {
+                    try {
+                        transactionService.transfer(sender, request);
+                        quarters.addAndGet(from, -amountQuarters);
+                        quarters.addAndGet(to, amountQuarters);
+                        completed.increment();
+                    } catch (IllegalArgumentException e) {
+                        rejected.increment(); // Insufficient balance
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            requestThreads.shutdown();
+        }
+
+        double total = 0;
+        for (int i = 0; i < HOT_ACCOUNTS; i++) {
+            double balance = userRepository.findById(avengers.get(i).getId()).orElseThrow().getBalance();
+            assertTrue(balance >= 0, "Account " + i + " was overdrawn");
+            assertEquals(INITIAL_BALANCE + quarters.get(i) * 0.25, balance);
+            total += balance;
+        }
+        assertEquals(INITIAL_BALANCE * HOT_ACCOUNTS, total);
+        assertEquals(TRANSFERS, completed.sum() + rejected.sum());
+        assertEquals(completed.sum(), transactionRepository.count() - existingTransactions);
+    }
+}